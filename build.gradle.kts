@@ -1,6 +1,8 @@
 plugins {
     java
     id("com.gradleup.shadow") version "8.3.0"
+    // JMH benchmarks in src/jmh (run with ./gradlew jmh)
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.myname.multisyncstats"
@@ -12,6 +14,12 @@ repositories {
     maven("https://repo.helpch.at/releases/") // PlaceholderAPI
 }
 
+// Headless load simulator in src/simulator (run with ./gradlew simulate --args="--servers=4 --players=500")
+val simulator: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    runtimeClasspath += output + compileClasspath + sourceSets.main.get().runtimeClasspath
+}
+
 dependencies {
     // Paper API includes Spigot and is recommended for modern plugin development
     compileOnly("io.papermc.paper:paper-api:1.21-R0.1-SNAPSHOT")
@@ -21,18 +29,53 @@ dependencies {
     implementation("com.zaxxer:HikariCP:5.1.0")
     // MySQL Connector
     implementation("mysql:mysql-connector-java:8.0.33")
+
+    // Benchmarks run headless, so the server APIs are needed on the benchmark classpath
+    jmh("io.papermc.paper:paper-api:1.21-R0.1-SNAPSHOT")
+    jmh("me.clip:placeholderapi:2.11.6")
+    // Embedded database in MySQL compatibility mode for the write path benchmark
+    jmh("com.h2database:h2:2.2.224")
+
+    // The simulator runs the same headless setup against an embedded database
+    "simulatorImplementation"("io.papermc.paper:paper-api:1.21-R0.1-SNAPSHOT")
+    "simulatorImplementation"("com.h2database:h2:2.2.224")
+    // SQLite backend. Paper ships this driver, so the plugin itself does not bundle it;
+    // SqliteStorage checks for the driver class and a minimum SQLite version at startup
+    "simulatorImplementation"("org.xerial:sqlite-jdbc:3.46.0.0")
+
+    // Unit tests run headless against the same embedded databases
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testImplementation("io.papermc.paper:paper-api:1.21-R0.1-SNAPSHOT")
+    testImplementation("com.h2database:h2:2.2.224")
+    testImplementation("org.xerial:sqlite-jdbc:3.46.0.0")
 }
 
 java {
     toolchain.languageVersion.set(JavaLanguageVersion.of(21))
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("2s")
+    iterations.set(5)
+    timeOnIteration.set("2s")
+    resultFormat.set("JSON")
+}
+
 tasks {
     // Set the encoding for Java compilation
     withType<JavaCompile> {
         options.encoding = "UTF-8"
     }
 
+    test {
+        useJUnitPlatform()
+    }
+
     // Process plugin.yml to replace variables
     processResources {
         filesMatching("plugin.yml") {
@@ -41,6 +84,13 @@ tasks {
     }
 }
 
+tasks.register<JavaExec>("simulate") {
+    group = "verification"
+    description = "Runs the headless load simulator against an embedded database."
+    classpath = simulator.runtimeClasspath
+    mainClass.set("com.myname.multisyncstats.simulator.LoadSimulator")
+}
+
 // Directly configure the shadowJar task
 tasks.shadowJar {
     mergeServiceFiles() // This is crucial for JDBC drivers and other services
@@ -0,0 +1,81 @@
+package com.myname.multisyncstats;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 基准测试共用的工具: 不依赖服务器的配置, 语言管理器和嵌入式数据库.
+ * 所有随机数据都使用固定种子, 保证每次运行的输入相同.
+ */
+final class BenchmarkSupport {
+
+    static final long SEED = 20240601L;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 安静的日志, 避免迁移信息影响测量.
+     */
+    static Logger quietLogger() {
+        Logger logger = Logger.getLogger("MultiSyncStats-Benchmark");
+        logger.setLevel(Level.WARNING);
+        return logger;
+    }
+
+    /**
+     * 从插件 JAR 中的默认语言文件创建语言管理器.
+     * @param lang 语言名称, 例如 "en_US".
+     */
+    static LanguageManager languageManager(String lang) throws Exception {
+        try (InputStream stream = BenchmarkSupport.class.getResourceAsStream("/lang/" + lang + ".yml")) {
+            if (stream == null) {
+                throw new IllegalStateException("找不到语言文件: " + lang);
+            }
+            return new LanguageManager(YamlConfiguration.loadConfiguration(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * 插件配置, 只设置存储布局, 其余使用默认值.
+     * @param layout "wide" 或 "normalized".
+     */
+    static YamlConfiguration config(String layout) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("storage.layout", layout);
+        return config;
+    }
+
+    /**
+     * 创建一个新的内存 H2 数据库 (MySQL 兼容模式) 的连接池.
+     * @param name 数据库名, 不同的名称对应互相独立的数据库.
+     */
+    static HikariDataSource h2DataSource(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        // VALUE 在 H2 中是关键字, 但在 MySQL 中可以作为列名
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(4);
+        return dataSource;
+    }
+
+    /**
+     * 生成固定的玩家UUID.
+     * @param count 数量.
+     */
+    static UUID[] players(int count) {
+        Random random = new Random(SEED);
+        UUID[] players = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            players[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return players;
+    }
+}
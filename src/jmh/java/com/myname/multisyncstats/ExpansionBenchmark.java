@@ -0,0 +1,142 @@
+package com.myname.multisyncstats;
+
+import com.myname.multisyncstats.cache.StatCache;
+import com.myname.multisyncstats.leaderboard.LeaderboardManager;
+import com.myname.multisyncstats.leaderboard.RankManager;
+import com.myname.multisyncstats.placeholder.ExpansionContext;
+import com.myname.multisyncstats.placeholder.MssExpansion;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MssExpansion.onRequest 的耗时: 这是记分板每次刷新时在主线程或区域线程上执行的代码.
+ * - hit: 缓存中已有值, 只有一次注册表查找和一次缓存读取.
+ * - miss: 每次请求一个没见过的玩家, 需要创建缓存条目并提交后台加载任务.
+ * placeholder 参数覆盖总和和聚合值变体; 它们读取同一个缓存条目, 耗时应当相近.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExpansionBenchmark {
+
+    private static final int PLAYERS = 1 << 16;
+
+    @Param({"hit", "miss"})
+    public String mode;
+
+    @Param({"player_kills", "player_kills_max", "player_kills_avg", "player_kills_server_survival"})
+    public String placeholder;
+
+    private StatCache cache;
+    private MssExpansion expansion;
+    private OfflinePlayer[] players;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        // 加载函数直接返回固定的行, 只测量占位符本身的开销
+        StatRow row = StatRow.of(StatType.INTEGER, null, Map.of("survival", BigDecimal.valueOf(40), "lobby", BigDecimal.valueOf(2)));
+        cache = new StatCache(BenchmarkSupport.quietLogger(),
+                (uuid, name) -> row,
+                (uuid, names) -> null,
+                3600, PLAYERS * 2, 1, "0");
+        PlaceholderRegistry synced = new PlaceholderRegistry(List.of(
+                new StatDescriptor(1, "player_kills", StatType.INTEGER),
+                new StatDescriptor(2, "player_deaths", StatType.INTEGER),
+                new StatDescriptor(3, "statistic_mine_block", StatType.INTEGER)));
+        FileConfiguration config = new YamlConfiguration();
+        expansion = new MssExpansion(new ExpansionContext() {
+            @Override
+            public PlaceholderRegistry getPlaceholderRegistry() {
+                return synced;
+            }
+
+            @Override
+            public StatCache getStatCache() {
+                return cache;
+            }
+
+            @Override
+            public RankManager getRankManager() {
+                return null;
+            }
+
+            @Override
+            public LeaderboardManager getLeaderboardManager() {
+                return null;
+            }
+
+            @Override
+            public FileConfiguration getConfig() {
+                return config;
+            }
+        }, "benchmark");
+
+        UUID[] uuids = BenchmarkSupport.players(PLAYERS);
+        players = new OfflinePlayer[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = offlinePlayer(uuids[i]);
+        }
+        if (mode.equals("hit")) {
+            // 预先加载所有玩家, 等待后台加载完成
+            for (OfflinePlayer player : players) {
+                cache.get(player.getUniqueId(), "player_kills");
+            }
+            while (!"42".equals(cache.get(players[PLAYERS - 1].getUniqueId(), "player_kills").total())) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetMisses() {
+        if (mode.equals("miss")) {
+            // 每轮从空缓存开始, 保证请求的都是未加载的玩家
+            cache.clear();
+            next = 0;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    @Benchmark
+    public String onRequest() {
+        OfflinePlayer player = players[next++ & (PLAYERS - 1)];
+        return expansion.onRequest(player, placeholder);
+    }
+
+    /**
+     * 只实现 getUniqueId 的 OfflinePlayer, 足以满足 onRequest.
+     */
+    private static OfflinePlayer offlinePlayer(UUID uuid) {
+        return (OfflinePlayer) Proxy.newProxyInstance(OfflinePlayer.class.getClassLoader(), new Class<?>[]{OfflinePlayer.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUniqueId" -> uuid;
+                    case "hashCode" -> uuid.hashCode();
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "OfflinePlayer[" + uuid + "]";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,41 @@
+package com.myname.multisyncstats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LanguageManager.get 的开销. 同步任务在每个无法解析的占位符上都会调用一次.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LanguageBenchmark {
+
+    private LanguageManager lang;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lang = BenchmarkSupport.languageManager("en_US");
+    }
+
+    @Benchmark
+    public String getWithoutReplacements() {
+        return lang.get("command.list.header");
+    }
+
+    @Benchmark
+    public String getWithReplacements() {
+        return lang.get("console.papi.not_numeric",
+                "placeholder", "%player_kills%",
+                "player_name", "Notch",
+                "value", "N/A");
+    }
+}
@@ -0,0 +1,43 @@
+package com.myname.multisyncstats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表名和 SQL 的生成开销.
+ * getTableName 和 buildWideUpsertSql 是加载占位符时执行一次的代码; 热路径上只从注册表查找预先生成的描述 (descriptorLookup).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SqlBuildBenchmark {
+
+    public String placeholderName = "statistic_mine_block:diamond_ore";
+    public String serverName = "survival-1";
+    private final PlaceholderRegistry registry = new PlaceholderRegistry(List.of(
+            new StatDescriptor(1, "player_kills", StatType.INTEGER),
+            new StatDescriptor(2, "player_deaths", StatType.INTEGER),
+            new StatDescriptor(3, placeholderName, StatType.INTEGER)));
+
+    @Benchmark
+    public String getTableName() {
+        return DatabaseManager.getTableName(placeholderName);
+    }
+
+    @Benchmark
+    public String buildWideUpsertSql() {
+        return DatabaseManager.buildWideUpsertSql(DatabaseManager.getTableName(placeholderName), serverName);
+    }
+
+    @Benchmark
+    public String descriptorLookup() {
+        return registry.get(placeholderName).upsertSql(serverName);
+    }
+}
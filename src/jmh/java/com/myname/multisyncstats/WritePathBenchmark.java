@@ -0,0 +1,80 @@
+package com.myname.multisyncstats;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同步写入路径 (DatabaseManager.updateLocalStats) 对嵌入式 H2 (MySQL 兼容模式) 的耗时.
+ * H2 与 MySQL 的绝对耗时不同, 这里用来比较不同版本之间的变化, 以及两种存储布局之间的差异.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WritePathBenchmark {
+
+    private static final String[] PLACEHOLDERS = {"player_kills", "player_deaths", "statistic_mine_block"};
+
+    @Param({"wide", "normalized"})
+    public String layout;
+
+    @Param({"1", "100"})
+    public int players;
+
+    private DatabaseManager databaseManager;
+    private List<List<StatUpdate>> batches;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        HikariDataSource dataSource = BenchmarkSupport.h2DataSource("write_" + layout + "_" + players);
+        databaseManager = new DatabaseManager(BenchmarkSupport.quietLogger(), BenchmarkSupport.languageManager("en_US"),
+                BenchmarkSupport.config(layout), () -> "bench", dataSource);
+        for (String placeholder : PLACEHOLDERS) {
+            databaseManager.addPlaceholder("%" + placeholder + "%", StatType.INTEGER);
+        }
+        databaseManager.loadPlaceholders();
+        if (layout.equals("normalized")) {
+            databaseManager.migrateToNormalizedLayout();
+        }
+
+        UUID[] uuids = BenchmarkSupport.players(players);
+        // 预先生成几组值不同的批次, 轮流写入, 保证每次写入都会真正修改数据
+        batches = new ArrayList<>();
+        for (int variant = 0; variant < 8; variant++) {
+            List<StatUpdate> batch = new ArrayList<>(players * PLACEHOLDERS.length);
+            for (int i = 0; i < players; i++) {
+                for (String placeholder : PLACEHOLDERS) {
+                    batch.add(new StatUpdate(uuids[i], "Player" + i, placeholder, BigDecimal.valueOf(variant * 1000L + i)));
+                }
+            }
+            batches.add(batch);
+        }
+        // 第一次写入会创建服务器列, 不计入测量
+        databaseManager.updateLocalStats(batches.get(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseManager.close();
+    }
+
+    @Benchmark
+    public boolean updateLocalStats() {
+        return databaseManager.updateLocalStats(batches.get(next++ & 7));
+    }
+}
@@ -1,30 +1,66 @@
 package com.myname.multisyncstats;
 
+import com.myname.multisyncstats.leaderboard.LeaderboardEntry;
+import com.myname.multisyncstats.metrics.PoolStats;
+import com.myname.multisyncstats.sync.ChangeEntry;
 import com.zaxxer.hikari.HikariDataSource;
-import org.bukkit.OfflinePlayer;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
- * 数据库管理器，负责所有数据库操作.
+ * MySQL 存储后端，负责所有数据库操作.
  * 正确的架构:
  * - `mss_synced_placeholders` 表是占位符列表的唯一数据源.
- * - PAPI 扩展调用 getSyncedData 获取所有服务器数据的总和.
+ * - PAPI 扩展通过缓存读取 getSyncedRow 返回的整行 (各服务器的值和总和).
  * - 同步任务调用 updateLocalStat 更新本服务器的数据.
+ * - 存储布局由 storage.layout 决定: wide (每个统计一张表, 每个服务器一列) 或 normalized (共用 mss_stat_values 表).
  */
-public class DatabaseManager {
+public class DatabaseManager implements StatStorage {
 
-    private final MultiSyncStats plugin;
+    private final Logger logger;
+    private final LanguageManager languageManager;
+    private final Supplier<String> serverName;
     private final HikariDataSource dataSource;
+    // 占位符, 排行榜和变更记录的只读查询使用的连接池 (可以指向只读副本); 为 null 时与写入共用 dataSource
+    private final HikariDataSource readDataSource;
+    private final long readRetryNanos;
+    // 只读连接池不可用时为 true, 在 readRetryAt (System.nanoTime) 之前读取直接使用主库
+    private volatile boolean readFallback;
+    private volatile long readRetryAt;
     private final Object columnCreateLock = new Object();
+    // 已确认存在本服务器列的表. 列不会被删除, 因此这里的记录永不过期.
+    private final Set<String> tablesWithLocalColumn = ConcurrentHashMap.newKeySet();
+    private final StorageLayout layout;
+    // 写入时是否同时追加到 mss_changes, 供其他服务器增量发现变化
+    private final boolean changeFeedEnabled;
+    // normalized 布局下, 数据已迁移到 mss_stat_values 的统计 (不带百分号). 尚未迁移的统计继续从旧表读取, 并双写.
+    private final Set<String> normalizedStats = ConcurrentHashMap.newKeySet();
+    // 需要同步的统计, 重新加载时整体替换
+    private volatile PlaceholderRegistry registry = PlaceholderRegistry.EMPTY;
+
+    // 插件自身使用的数据表, 任何占位符都不能映射到这些表名
+    private static final Set<String> RESERVED_TABLES = Set.of("mss_synced_placeholders", "mss_stat_values", "mss_stat_totals", "mss_meta", "mss_changes");
+    // 宽表中维护的总和列, 与各服务器列在同一条语句中更新
+    public static final String TOTAL_COLUMN = "mss_total";
+    // 迁移旧表时每批复制的行数
+    private static final int MIGRATION_CHUNK_SIZE = 500;
 
     /**
      * 初始化数据库连接池并初始化表结构.
@@ -32,34 +68,159 @@ public class DatabaseManager {
      * @throws SQLException 如果连接或初始化失败.
      */
     public DatabaseManager(MultiSyncStats plugin) throws SQLException {
-        this.plugin = plugin;
-        ConfigurationSection dbConfig = plugin.getConfig().getConfigurationSection("database");
+        this(plugin.getLogger(), plugin.getLanguageManager(), plugin.getConfig(), plugin::getServerName,
+                createMySqlDataSource(plugin.getConfig()), createReadDataSource(plugin.getConfig()));
+    }
+
+    /**
+     * 使用给定的连接池初始化表结构. 不依赖服务器环境, 基准测试和模拟器可以直接传入嵌入式数据库的连接池.
+     * @param logger          日志.
+     * @param languageManager 语言管理器, 用于迁移等控制台信息.
+     * @param config          插件配置 (读取 cache, storage 和 change-feed 部分).
+     * @param serverName      返回本服务器名的函数 (重载后可能变化).
+     * @param dataSource      连接池. 初始化失败时会被关闭.
+     * @throws SQLException 如果初始化失败.
+     */
+    public DatabaseManager(Logger logger, LanguageManager languageManager, ConfigurationSection config,
+                           Supplier<String> serverName, HikariDataSource dataSource) throws SQLException {
+        this(logger, languageManager, config, serverName, dataSource, null);
+    }
+
+    /**
+     * 使用给定的写入和只读连接池初始化表结构.
+     * @param logger          日志.
+     * @param languageManager 语言管理器, 用于迁移等控制台信息.
+     * @param config          插件配置 (读取 cache, storage, change-feed 和 database.read 部分).
+     * @param serverName      返回本服务器名的函数 (重载后可能变化).
+     * @param dataSource      写入连接池. 初始化失败时会被关闭.
+     * @param readDataSource  只读连接池, 为 null 时读取也使用写入连接池. 初始化失败时会被关闭.
+     * @throws SQLException 如果初始化失败.
+     */
+    public DatabaseManager(Logger logger, LanguageManager languageManager, ConfigurationSection config,
+                           Supplier<String> serverName, HikariDataSource dataSource, HikariDataSource readDataSource) throws SQLException {
+        this.logger = logger;
+        this.languageManager = languageManager;
+        this.serverName = serverName;
+        this.dataSource = dataSource;
+        this.readDataSource = readDataSource;
+        this.readRetryNanos = TimeUnit.SECONDS.toNanos(Math.max(1, config.getLong("database.read.retry-seconds", 30)));
+        this.layout = StorageLayout.fromConfig(config.getString("storage.layout", "wide"));
+        this.changeFeedEnabled = config.getBoolean("change-feed.enabled", true);
+
+        try {
+            // 尝试初始化表结构来验证连接是否成功.
+            initializeTables();
+        } catch (SQLException e) {
+            // 不在此处记录日志. 直接将异常抛出，由主类统一处理.
+            dataSource.close();
+            if (readDataSource != null) {
+                readDataSource.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 根据 config.yml 中的 database 部分创建写入连接池. 写入, 迁移和表结构操作都使用这个连接池.
+     * @param config 插件配置.
+     * @return 连接池.
+     * @throws SQLException 如果 database 部分缺失.
+     */
+    private static HikariDataSource createMySqlDataSource(ConfigurationSection config) throws SQLException {
+        ConfigurationSection dbConfig = config.getConfigurationSection("database");
         if (dbConfig == null) {
             throw new SQLException("数据库配置 'database' 部分缺失!");
         }
 
-        dataSource = new HikariDataSource();
-        dataSource.setJdbcUrl(String.format("jdbc:mysql://%s:%d/%s?useSSL=%s&autoReconnect=true&allowPublicKeyRetrieval=true",
-                dbConfig.getString("host"),
-                dbConfig.getInt("port"),
-                dbConfig.getString("database"),
-                dbConfig.getBoolean("useSSL", false)
+        HikariDataSource dataSource = createMySqlPool(dbConfig, dbConfig);
+        dataSource.setPoolName("MultiSyncStats-Write");
+        dataSource.setMaximumPoolSize(Math.max(1, dbConfig.getInt("pool-size", 10)));
+        dataSource.setConnectionTimeout(Math.max(250, dbConfig.getLong("connection-timeout-ms", 30000)));
+        return dataSource;
+    }
+
+    /**
+     * 根据 config.yml 中的 database.read 部分创建只读连接池.
+     * host 留空时连接主库 (读取仍与写入分开排队), 否则连接只读副本; 留空的其他连接设置沿用主库.
+     * 副本在启动时不可用不会阻止插件启用, 读取会先改用主库.
+     * @param config 插件配置.
+     * @return 连接池; 未启用时返回 null.
+     */
+    private static HikariDataSource createReadDataSource(ConfigurationSection config) {
+        ConfigurationSection dbConfig = config.getConfigurationSection("database");
+        ConfigurationSection readConfig = dbConfig != null ? dbConfig.getConfigurationSection("read") : null;
+        if (readConfig == null || !readConfig.getBoolean("enabled", true)) {
+            return null;
+        }
+        boolean replica = !readConfig.getString("host", "").isBlank();
+        HikariDataSource dataSource = createMySqlPool(replica ? readConfig : dbConfig, dbConfig);
+        dataSource.setPoolName("MultiSyncStats-Read");
+        dataSource.setMaximumPoolSize(Math.max(1, readConfig.getInt("pool-size", 4)));
+        dataSource.setConnectionTimeout(Math.max(250, readConfig.getLong("connection-timeout-ms", 1000)));
+        dataSource.setReadOnly(true);
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+
+    /**
+     * 创建一个 MySQL 连接池.
+     * @param section 连接设置 (host, port, database, username, password, useSSL).
+     * @param primary 主库的连接设置, section 中留空的项使用这里的值.
+     * @return 连接池.
+     */
+    private static HikariDataSource createMySqlPool(ConfigurationSection section, ConfigurationSection primary) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(String.format("jdbc:mysql://%s:%d/%s?useSSL=%s&autoReconnect=true&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true",
+                setting(section, primary, "host"),
+                section.getInt("port", primary.getInt("port", 3306)),
+                setting(section, primary, "database"),
+                section.getBoolean("useSSL", primary.getBoolean("useSSL", false))
         ));
-        dataSource.setUsername(dbConfig.getString("username"));
-        dataSource.setPassword(dbConfig.getString("password"));
+        dataSource.setUsername(setting(section, primary, "username"));
+        dataSource.setPassword(setting(section, primary, "password"));
         dataSource.addDataSourceProperty("cachePrepStmts", "true");
         dataSource.addDataSourceProperty("prepStmtCacheSize", "250");
         dataSource.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        return dataSource;
+    }
 
+    private static String setting(ConfigurationSection section, ConfigurationSection primary, String key) {
+        String value = section.getString(key, "");
+        return value == null || value.isBlank() ? primary.getString(key) : value;
+    }
+
+    /**
+     * 获取只读查询使用的连接. 只读连接池不可用时记录一次警告并改用主库,
+     * 之后每隔 database.read.retry-seconds 秒重试一次只读连接池.
+     * @return 数据库连接.
+     * @throws SQLException 如果主库连接也获取失败.
+     */
+    private Connection getReadConnection() throws SQLException {
+        HikariDataSource read = readDataSource;
+        if (read == null) {
+            return dataSource.getConnection();
+        }
+        if (readFallback && System.nanoTime() - readRetryAt < 0) {
+            return dataSource.getConnection();
+        }
         try {
-            // 尝试初始化表结构来验证连接是否成功.
-            initializeTables();
+            Connection conn = read.getConnection();
+            if (readFallback) {
+                readFallback = false;
+                logger.info(languageManager.get("console.db.read_pool_recovered"));
+            }
+            return conn;
         } catch (SQLException e) {
-            // 不在此处记录日志. 直接将异常抛出，由主类统一处理.
-            throw e;
+            if (!readFallback) {
+                logger.warning(languageManager.get("console.db.read_pool_unavailable",
+                        "seconds", String.valueOf(TimeUnit.NANOSECONDS.toSeconds(readRetryNanos)), "error", String.valueOf(e.getMessage())));
+            }
+            readRetryAt = System.nanoTime() + readRetryNanos;
+            readFallback = true;
+            return dataSource.getConnection();
         }
     }
-    
+
     /**
      * 初始化插件所需的核心数据表.
      * @throws SQLException SQL异常.
@@ -69,15 +230,128 @@ public class DatabaseManager {
                 "id INT AUTO_INCREMENT PRIMARY KEY," +
                 "placeholder_name VARCHAR(255) NOT NULL UNIQUE" +
                 ")";
+        String createMetaTableSQL = "CREATE TABLE IF NOT EXISTS mss_meta (" +
+                "meta_key VARCHAR(255) NOT NULL PRIMARY KEY," +
+                "meta_value VARCHAR(255) NOT NULL" +
+                ")";
         try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
             stmt.execute(createPlaceholdersTableSQL);
+            stmt.execute(createMetaTableSQL);
+            // 旧版本没有 value_type 列, 默认所有统计为整数
+            if (!columnExists(conn, "mss_synced_placeholders", "value_type")) {
+                stmt.executeUpdate("ALTER TABLE mss_synced_placeholders ADD COLUMN value_type VARCHAR(16) NOT NULL DEFAULT 'INTEGER'");
+            }
+            // 只追加的变更记录: 每个服务器按 seq 增量读取, 用来让本地缓存失效
+            stmt.execute("CREATE TABLE IF NOT EXISTS mss_changes (" +
+                    "seq BIGINT AUTO_INCREMENT PRIMARY KEY," +
+                    "player_uuid VARCHAR(36) NOT NULL," +
+                    "placeholder_name VARCHAR(255) NOT NULL," +
+                    "server_id VARCHAR(64) NOT NULL," +
+                    "changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)," +
+                    "KEY idx_changed_at (changed_at)" +
+                    ")");
+            if (layout == StorageLayout.NORMALIZED) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS mss_stat_values (" +
+                        "player_uuid VARCHAR(36) NOT NULL," +
+                        "stat_id INT NOT NULL," +
+                        "server_id VARCHAR(64) NOT NULL," +
+                        "player_name VARCHAR(16) NOT NULL," +
+                        "value DECIMAL(24,4) NOT NULL DEFAULT 0," +
+                        "PRIMARY KEY (player_uuid, stat_id, server_id)," +
+                        "KEY idx_stat_server (stat_id, server_id)" +
+                        ")");
+                // 旧版本的 value 列为 BIGINT, 扩大为 DECIMAL 以容纳小数统计
+                try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, "mss_stat_values", "value")) {
+                    if (rs.next() && !rs.getString("TYPE_NAME").toUpperCase().startsWith("DECIMAL")) {
+                        stmt.executeUpdate("ALTER TABLE mss_stat_values MODIFY COLUMN value DECIMAL(24,4) NOT NULL DEFAULT 0");
+                    }
+                }
+                // 每个 (玩家, 统计) 的预先维护的总和, 读取时只需一次主键查询
+                stmt.execute("CREATE TABLE IF NOT EXISTS mss_stat_totals (" +
+                        "player_uuid VARCHAR(36) NOT NULL," +
+                        "stat_id INT NOT NULL," +
+                        "player_name VARCHAR(16) NOT NULL," +
+                        "total DECIMAL(24,4) NOT NULL DEFAULT 0," +
+                        "PRIMARY KEY (player_uuid, stat_id)," +
+                        "KEY idx_stat_total (stat_id, total)" +
+                        ")");
+                // 从没有总和表的旧版本升级时, 根据已有数据一次性重建
+                try (PreparedStatement marker = conn.prepareStatement("INSERT IGNORE INTO mss_meta (meta_key, meta_value) VALUES ('normalized_totals', ?)")) {
+                    marker.setString(1, serverName.get());
+                    if (marker.executeUpdate() > 0) {
+                        rebuildNormalizedTotals(conn, null);
+                    }
+                }
+                // 读取其他服务器 (或之前的启动) 已完成的迁移记录
+                loadNormalizedStats(conn);
+            }
         }
     }
 
+    /**
+     * 从 mss_meta 读取已迁移到 normalized 布局的统计.
+     * @param conn 数据库连接.
+     * @throws SQLException SQL 异常.
+     */
+    private void loadNormalizedStats(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT meta_key FROM mss_meta WHERE meta_key LIKE 'normalized:%'")) {
+            while (rs.next()) {
+                normalizedStats.add(rs.getString("meta_key").substring("normalized:".length()));
+            }
+        }
+    }
+
+    /**
+     * 当前使用的存储布局.
+     */
+    @Override
+    public StorageLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 读取连接池的当前状态. 只读取内存中的计数, 不访问数据库.
+     * @return 连接池状态; 连接池尚未启动或已关闭时返回 null.
+     */
+    @Override
+    public PoolStats getPoolStats() {
+        return poolStats(dataSource);
+    }
+
+    /**
+     * 读取只读连接池的当前状态.
+     * @return 连接池状态; 未启用单独的只读连接池或已关闭时返回 null.
+     */
+    @Override
+    public PoolStats getReadPoolStats() {
+        return readDataSource != null ? poolStats(readDataSource) : null;
+    }
+
+    /**
+     * 只读连接池当前是否不可用 (读取暂时改用主库).
+     */
+    @Override
+    public boolean isReadFallbackActive() {
+        return readFallback;
+    }
+
+    private static PoolStats poolStats(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.isClosed() ? null : dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return null;
+        }
+        return new PoolStats(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(), pool.getThreadsAwaitingConnection());
+    }
+
     /**
      * 关闭数据库连接池.
      */
+    @Override
     public void close() {
+        if (readDataSource != null && !readDataSource.isClosed()) {
+            readDataSource.close();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
         }
@@ -86,31 +360,58 @@ public class DatabaseManager {
     /**
      * 添加一个新的占位符到数据库, 并创建对应的数据表.
      * @param placeholderName 占位符名称.
+     * @param type            数值类型, 决定数据列的类型.
      * @return 如果添加成功或已存在，返回 true.
      */
-    public boolean addPlaceholder(String placeholderName) {
+    @Override
+    public boolean addPlaceholder(String placeholderName, StatType type) {
         // 清理占位符名称，去除PAPI的百分号
         String cleanPlaceholderName = placeholderName.replace("%", "");
+        if (RESERVED_TABLES.contains(getTableName(cleanPlaceholderName))) {
+            logger.severe("占位符 " + placeholderName + " 与插件自身的数据表重名, 无法添加.");
+            return false;
+        }
 
-        String insertSQL = "INSERT IGNORE INTO mss_synced_placeholders (placeholder_name) VALUES (?)";
+        String insertSQL = "INSERT IGNORE INTO mss_synced_placeholders (placeholder_name, value_type) VALUES (?, ?)";
         String createTableSQL = "CREATE TABLE IF NOT EXISTS `" + getTableName(cleanPlaceholderName) + "` (" +
                                 "`player_uuid` VARCHAR(36) NOT NULL PRIMARY KEY," +
-                                "`player_name` VARCHAR(16) NOT NULL" +
+                                "`player_name` VARCHAR(16) NOT NULL," +
+                                "`" + TOTAL_COLUMN + "` " + type.sqlType() + " NOT NULL DEFAULT 0," +
+                                "KEY `" + totalIndexName(getTableName(cleanPlaceholderName)) + "` (`" + TOTAL_COLUMN + "`)" +
                                 ")";
         try (Connection conn = dataSource.getConnection();
              PreparedStatement insertStmt = conn.prepareStatement(insertSQL);
              Statement createStmt = conn.createStatement()) {
             // 1. 插入到占位符列表 (存储的是原始带%的名称)
             insertStmt.setString(1, placeholderName);
+            insertStmt.setString(2, type.name());
             insertStmt.executeUpdate();
             
             // 2. 创建数据表 (使用清理后的名称)
             createStmt.execute(createTableSQL);
-            return true;
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "添加占位符 " + placeholderName + " 失败.", e);
+            logger.log(Level.SEVERE, "添加占位符 " + placeholderName + " 失败.", e);
             return false;
         }
+        // 3. 重新加载注册表, 使新统计立即可用
+        StatDescriptor stat = loadPlaceholders().get(cleanPlaceholderName);
+        // 4. normalized 布局下立即迁移 (新表没有数据, 只需记录迁移完成)
+        if (layout == StorageLayout.NORMALIZED && stat != null) {
+            try {
+                migrateStatToNormalized(stat);
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "迁移占位符 " + placeholderName + " 到 normalized 布局失败.", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 如果某个统计的数据已在 normalized 布局中, 返回 true.
+     * @param placeholderName 占位符名称 (不带百分号).
+     */
+    private boolean isNormalized(String placeholderName) {
+        return layout == StorageLayout.NORMALIZED && normalizedStats.contains(placeholderName);
     }
 
     /**
@@ -118,89 +419,310 @@ public class DatabaseManager {
      * @param placeholderName 占位符名称.
      * @return 如果移除成功，返回 true.
      */
+    @Override
     public boolean removePlaceholder(String placeholderName) {
         // 为了数据安全，我们不删除数据表 (mss_data_...)
         String deleteSQL = "DELETE FROM mss_synced_placeholders WHERE placeholder_name = ?";
         try (Connection conn = dataSource.getConnection();
              PreparedStatement deleteStmt = conn.prepareStatement(deleteSQL)) {
             deleteStmt.setString(1, placeholderName);
-            int affectedRows = deleteStmt.executeUpdate();
-            return affectedRows > 0;
+            if (deleteStmt.executeUpdate() == 0) {
+                return false;
+            }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "移除占位符 " + placeholderName + " 失败.", e);
+            logger.log(Level.SEVERE, "移除占位符 " + placeholderName + " 失败.", e);
             return false;
         }
+        loadPlaceholders();
+        return true;
     }
 
     /**
-     * 从数据库获取所有需要同步的占位符列表.
-     * @return 占位符名称集合.
+     * 从数据库重新加载需要同步的占位符列表, 并整体替换当前注册表.
+     * 定义没有变化的统计沿用原来的描述, 不会重新生成 SQL.
+     * @return 新的注册表; 加载失败时返回原来的注册表.
      */
-    public Set<String> getSyncedPlaceholders() {
-        Set<String> placeholders = new HashSet<>();
-        String sql = "SELECT placeholder_name FROM mss_synced_placeholders";
+    @Override
+    public PlaceholderRegistry loadPlaceholders() {
+        PlaceholderRegistry current = registry;
+        List<StatDescriptor> loaded = new ArrayList<>();
+        String sql = "SELECT id, placeholder_name, value_type FROM mss_synced_placeholders";
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                placeholders.add(rs.getString("placeholder_name"));
+                loaded.add(current.describe(rs.getInt("id"), rs.getString("placeholder_name"), StatType.fromStoredName(rs.getString("value_type"))));
+            }
+            if (layout == StorageLayout.NORMALIZED) {
+                // 其他服务器可能已完成某些统计的迁移
+                loadNormalizedStats(conn);
             }
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "从数据库获取同步占位符列表失败.", e);
+            logger.log(Level.SEVERE, "从数据库获取同步占位符列表失败.", e);
+            return current;
         }
-        return placeholders;
+        registry = current.replaceWith(loaded);
+        return registry;
+    }
+
+    /**
+     * 当前的占位符注册表. 只读取内存, 不访问数据库.
+     */
+    @Override
+    public PlaceholderRegistry getPlaceholders() {
+        return registry;
     }
 
 
     /**
-     * 核心方法: 获取某个玩家在所有服务器上某个统计的总和.
-     * 由 PAPIExpansion 调用.
+     * 核心方法: 获取某个玩家某个统计在各服务器上的整行.
+     * 由 StatCache 在后台线程调用, 不会在 PAPI 线程上直接执行. 总和, 最大值, 平均值和单个服务器的占位符共用这一行.
      *
-     * @param player          玩家.
+     * @param playerUUID      玩家UUID.
      * @param placeholderName 占位符的名称 (例如 "statistic_mine_block").
-     * @return 字符串格式的合计数据，或 "0" 如果没有数据.
+     * @return 整行; 没有数据时返回空行, 查询失败时返回 null.
      */
-    public String getSyncedData(OfflinePlayer player, String placeholderName) {
-        String tableName = getTableName(placeholderName);
-        List<String> serverColumns = getColumnsForTable(tableName);
+    @Override
+    public StatRow getSyncedRow(UUID playerUUID, String placeholderName) {
+        StatDescriptor stat = registry.get(placeholderName);
+        if (stat == null) {
+            return StatRow.empty();
+        }
+        if (isNormalized(placeholderName)) {
+            return getNormalizedRow(playerUUID, stat);
+        }
+        String tableName = stat.tableName();
 
-        if (serverColumns.isEmpty()) {
-            return "0";
+        try (Connection conn = getReadConnection()) {
+            return readWideRow(conn, stat, playerUUID);
+        } catch (SQLException e) {
+            if (isMissingTable(e)) {
+                 // 这个错误理论上不应该发生，因为PAPI扩展只会查询在列表中的占位符.
+                 // 但作为安全措施，我们记录它.
+                 logger.warning("PAPI扩展尝试查询一个不存在的数据表: " + tableName);
+                 return StatRow.empty();
+            }
+            logger.log(Level.WARNING, "获取同步数据失败 for " + placeholderName, e);
+            return null;
         }
-        
-        String sumCalculation = serverColumns.stream()
-                .map(col -> String.format("IFNULL(`%s`, 0)", col))
-                .collect(Collectors.joining(" + "));
+    }
 
-        String sql = String.format("SELECT (%s) AS total FROM `%s` WHERE player_uuid = ?", sumCalculation, tableName);
+    /**
+     * 用一次主键查询读取 wide 布局中某个玩家的整行: 各服务器列和写入时维护的总和列.
+     * @param conn       数据库连接.
+     * @param stat       统计.
+     * @param playerUUID 玩家UUID.
+     * @return 整行; 没有记录时返回空行.
+     * @throws SQLException SQL 异常.
+     */
+    private StatRow readWideRow(Connection conn, StatDescriptor stat, UUID playerUUID) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(stat.selectRowSql())) {
+            stmt.setString(1, playerUUID.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return StatRow.empty();
+                }
+                ResultSetMetaData columns = rs.getMetaData();
+                Map<String, BigDecimal> values = new HashMap<>();
+                BigDecimal total = null;
+                for (int i = 1; i <= columns.getColumnCount(); i++) {
+                    String column = columns.getColumnLabel(i);
+                    if (TOTAL_COLUMN.equalsIgnoreCase(column)) {
+                        total = rs.getBigDecimal(i);
+                    } else if (isServerColumn(column)) {
+                        values.put(column, rs.getBigDecimal(i));
+                    }
+                }
+                return StatRow.of(stat.type(), total, values);
+            }
+        }
+    }
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /**
+     * 异常是否表示数据表不存在 (SQLSTATE 42S02).
+     */
+    private static boolean isMissingTable(SQLException e) {
+        return "42S02".equals(e.getSQLState()) || e.getMessage() != null && e.getMessage().toLowerCase().contains("doesn't exist");
+    }
 
-            stmt.setString(1, player.getUniqueId().toString());
+    /**
+     * 一次性获取某个玩家多个统计的整行. 用于玩家加入时预取.
+     * wide 布局的统计在同一个连接上逐表进行主键查询, normalized 布局的统计一条查询全部取回.
+     *
+     * @param playerUUID       玩家UUID.
+     * @param placeholderNames 占位符名称 (不带百分号).
+     * @return 占位符名称 -> 整行. 没有数据时为空行; 单独查询失败的统计不出现在结果中; 整体失败时返回 null.
+     */
+    @Override
+    public Map<String, StatRow> getAllSyncedRows(UUID playerUUID, Collection<String> placeholderNames) {
+        PlaceholderRegistry stats = registry;
+        List<StatDescriptor> wideStats = new ArrayList<>();
+        Map<Integer, StatDescriptor> normalized = new HashMap<>();
+        for (String placeholderName : placeholderNames) {
+            StatDescriptor stat = stats.get(placeholderName);
+            if (stat == null) {
+                continue;
+            }
+            if (isNormalized(placeholderName)) {
+                normalized.put(stat.id(), stat);
+            } else {
+                wideStats.add(stat);
+            }
+        }
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    long total = rs.getLong("total");
-                    return String.valueOf(total);
-                } else {
-                    return "0";
+        Map<String, StatRow> rows = new HashMap<>();
+        // normalized 布局: 统计 -> 服务器名 -> 值
+        Map<StatDescriptor, Map<String, BigDecimal>> values = new HashMap<>();
+        try (Connection conn = getReadConnection()) {
+            // wide 布局: 每张表一次主键查询. 单张表查询失败只跳过这个统计, 它稍后会按需单独加载
+            for (StatDescriptor stat : wideStats) {
+                try {
+                    rows.put(stat.name(), readWideRow(conn, stat, playerUUID));
+                } catch (SQLException e) {
+                    if (isMissingTable(e)) {
+                        logger.warning("预取时跳过不存在的数据表: " + stat.tableName());
+                        rows.put(stat.name(), StatRow.empty());
+                    } else {
+                        logger.log(Level.WARNING, "预取玩家 " + playerUUID + " 的 " + stat.name() + " 失败", e);
+                    }
+                }
+            }
+            if (!normalized.isEmpty()) {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT stat_id, server_id, value FROM mss_stat_values WHERE player_uuid = ?")) {
+                    stmt.setString(1, playerUUID.toString());
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            StatDescriptor stat = normalized.get(rs.getInt("stat_id"));
+                            if (stat != null) {
+                                values.computeIfAbsent(stat, k -> new HashMap<>()).put(rs.getString("server_id"), rs.getBigDecimal("value"));
+                            }
+                        }
+                    }
                 }
             }
         } catch (SQLException e) {
-            if (e.getMessage().toLowerCase().contains("doesn't exist")) {
-                 // 这个错误理论上不应该发生，因为PAPI扩展只会查询在列表中的占位符.
-                 // 但作为安全措施，我们记录它.
-                 plugin.getLogger().warning("PAPI扩展尝试查询一个不存在的数据表: " + tableName);
-                 return "0";
+            logger.log(Level.WARNING, "预取玩家 " + playerUUID + " 的同步数据失败", e);
+            return null;
+        }
+
+        for (StatDescriptor stat : normalized.values()) {
+            Map<String, BigDecimal> statValues = values.get(stat);
+            rows.put(stat.name(), statValues == null ? StatRow.empty() : StatRow.of(stat.type(), null, statValues));
+        }
+        for (String placeholderName : placeholderNames) {
+            if (!stats.contains(placeholderName)) {
+                rows.put(placeholderName, StatRow.empty());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 获取某个统计总和最高的前 limit 名玩家. 使用总和列上的索引, 不做全表排序.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @param limit           名次数.
+     * @return 按总和从大到小排列的行, 查询失败时返回 null.
+     */
+    @Override
+    public List<LeaderboardEntry> getTopEntries(String placeholderName, int limit) {
+        List<LeaderboardEntry> entries = new ArrayList<>(limit);
+        StatDescriptor stat = registry.get(placeholderName);
+        if (stat == null) {
+            return entries;
+        }
+        try (Connection conn = getReadConnection()) {
+            PreparedStatement stmt;
+            if (isNormalized(placeholderName)) {
+                stmt = conn.prepareStatement("SELECT player_uuid, player_name, total FROM mss_stat_totals WHERE stat_id = ? ORDER BY total DESC LIMIT ?");
+                stmt.setInt(1, stat.id());
+                stmt.setInt(2, limit);
+            } else {
+                stmt = conn.prepareStatement(stat.selectTopSql());
+                stmt.setInt(1, limit);
+            }
+            try (stmt; ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new LeaderboardEntry(UUID.fromString(rs.getString("player_uuid")), rs.getString("player_name"),
+                            stat.type().format(rs.getBigDecimal("total"))));
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "获取排行榜失败 for " + placeholderName, e);
+            return null;
+        }
+        return entries;
+    }
+
+    /**
+     * 获取某个统计所有玩家的总和, 用于建立名次索引.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @return 玩家UUID -> 总和, 查询失败时返回 null.
+     */
+    @Override
+    public Map<UUID, Double> getAllTotals(String placeholderName) {
+        Map<UUID, Double> totals = new HashMap<>();
+        StatDescriptor stat = registry.get(placeholderName);
+        if (stat == null) {
+            return totals;
+        }
+        try (Connection conn = getReadConnection()) {
+            PreparedStatement stmt;
+            if (isNormalized(placeholderName)) {
+                stmt = conn.prepareStatement("SELECT player_uuid, total FROM mss_stat_totals WHERE stat_id = ?");
+                stmt.setInt(1, stat.id());
+            } else {
+                stmt = conn.prepareStatement(stat.selectAllTotalsSql());
+            }
+            try (stmt; ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.put(UUID.fromString(rs.getString("player_uuid")), rs.getDouble("total"));
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "获取所有玩家总和失败 for " + placeholderName, e);
+            return null;
+        }
+        return totals;
+    }
+
+    /**
+     * normalized 布局: 按主键前缀读取某个玩家某个统计在各服务器上的值. 总和在内存中计算, 与 mss_stat_totals 一致.
+     * @param playerUUID 玩家UUID.
+     * @param stat       统计.
+     * @return 整行; 没有数据时返回空行, 查询失败时返回 null.
+     */
+    private StatRow getNormalizedRow(UUID playerUUID, StatDescriptor stat) {
+        String sql = "SELECT server_id, value FROM mss_stat_values WHERE player_uuid = ? AND stat_id = ?";
+        try (Connection conn = getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, playerUUID.toString());
+            stmt.setInt(2, stat.id());
+            Map<String, BigDecimal> values = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    values.put(rs.getString("server_id"), rs.getBigDecimal("value"));
+                }
             }
-            plugin.getLogger().log(Level.WARNING, "获取同步数据失败 for " + placeholderName, e);
-            return "0";
+            return values.isEmpty() ? StatRow.empty() : StatRow.of(stat.type(), null, values);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "获取同步数据失败 for " + stat.name(), e);
+            return null;
         }
     }
 
     /**
-     * 获取指定表的所有列名，除了 'player_uuid'.
+     * 判断一个宽表中的列是否为服务器列 (而不是玩家信息或总和列).
+     * @param columnName 列名.
+     * @return 如果是服务器列则返回 true.
+     */
+    private static boolean isServerColumn(String columnName) {
+        return !"player_uuid".equalsIgnoreCase(columnName)
+                && !"player_name".equalsIgnoreCase(columnName)
+                && !TOTAL_COLUMN.equalsIgnoreCase(columnName);
+    }
+
+    /**
+     * 获取指定表的所有服务器列名.
      * @param tableName 表名.
      * @return 列名列表.
      */
@@ -211,15 +733,15 @@ public class DatabaseManager {
             try (ResultSet rs = metaData.getColumns(conn.getCatalog(), null, tableName, null)) {
                 while (rs.next()) {
                     String columnName = rs.getString("COLUMN_NAME");
-                    // 同时排除 player_uuid 和 player_name
-                    if (!"player_uuid".equalsIgnoreCase(columnName) && !"player_name".equalsIgnoreCase(columnName)) {
+                    // 排除 player_uuid, player_name 和总和列
+                    if (isServerColumn(columnName)) {
                         columns.add(columnName);
                     }
                 }
             }
         } catch (SQLException e) {
              if (!e.getMessage().toLowerCase().contains("doesn't exist")) {
-                plugin.getLogger().log(Level.SEVERE, "无法获取表 " + tableName + " 的列信息", e);
+                logger.log(Level.SEVERE, "无法获取表 " + tableName + " 的列信息", e);
              }
         }
         return columns;
@@ -230,93 +752,552 @@ public class DatabaseManager {
      * @param conn The database connection to use.
      * @param tableName  表名
      * @param serverName 服务器名
+     * @param type       统计的数值类型, 决定新列的类型
      * @throws SQLException 如果检查或创建列时发生SQL错误
      */
-    private void ensureServerColumnExists(Connection conn, String tableName, String serverName) throws SQLException {
+    private void ensureServerColumnExists(Connection conn, String tableName, String serverName, StatType type) throws SQLException {
+        // 快速路径: 列已确认存在时, 既不加锁也不查询元数据
+        if (tablesWithLocalColumn.contains(tableName)) {
+            return;
+        }
         // 为了防止多个线程同时尝试创建同一个列（竞态条件），我们在这里使用同步锁。
         // 这是一个罕见的操作（只在服务器第一次被记录时发生），所以性能影响可以忽略不计。
         synchronized (columnCreateLock) {
+            if (tablesWithLocalColumn.contains(tableName)) {
+                return;
+            }
             if (!columnExists(conn, tableName, serverName)) {
-                plugin.getLogger().info(plugin.getLanguageManager().get("console.migration.adding_server_column", "table", tableName, "server", serverName));
+                logger.info(languageManager.get("console.migration.adding_server_column", "table", tableName, "server", serverName));
                 // 注意：在列名和表名周围使用反引号以处理特殊字符
-                // 使用 VARCHAR 来存储可能非数字的值，并默认为'0'以便于计算
-                String addColumnSQL = String.format("ALTER TABLE `%s` ADD COLUMN `%s` VARCHAR(255) DEFAULT '0'", tableName, serverName);
+                // 使用数值类型存储, 求和时无需字符串转换.
+                // 没有默认值: 已有的行在新列中为 NULL, 表示该服务器没有记录, 不计入平均值 (与 normalized 布局一致)
+                String addColumnSQL = String.format("ALTER TABLE `%s` ADD COLUMN `%s` %s NULL", tableName, serverName, type.sqlType());
                 try (Statement stmt = conn.createStatement()) {
                     stmt.executeUpdate(addColumnSQL);
-                    plugin.getLogger().info(plugin.getLanguageManager().get("console.migration.column_added", "column", serverName, "table", tableName));
+                    logger.info(languageManager.get("console.migration.column_added", "column", serverName, "table", tableName));
                 }
             }
+            tablesWithLocalColumn.add(tableName);
         }
     }
 
     /**
      * 更新本服务器上一个玩家的统计数据.
-     * 由同步任务调用.
      *
      * @param playerUUID      玩家UUID.
      * @param playerName      玩家名.
      * @param placeholderName 占位符名称 (不带百分号).
-     * @param value           新的数值.
+     * @param value           新的数值 (PAPI 返回的字符串).
      */
     public void updateLocalStat(UUID playerUUID, String playerName, String placeholderName, String value) {
-        String tableName = getTableName(placeholderName);
-        String serverName = plugin.getServerName();
+        StatDescriptor stat = registry.get(placeholderName);
+        if (stat == null) {
+            return;
+        }
+        BigDecimal parsed = stat.type().parse(value);
+        if (parsed == null) {
+            logger.warning("统计值不是有效的数字, 已跳过: " + placeholderName + " = " + value);
+            return;
+        }
+        updateLocalStats(List.of(new StatUpdate(playerUUID, playerName, placeholderName, parsed)));
+    }
+
+    /**
+     * 批量更新本服务器的统计数据.
+     * 由同步任务调用: 按数据表分组, 使用同一个连接和 executeBatch, 在一个事务中提交整个同步周期的数据.
+     * 不在注册表中的统计 (例如刚被移除的统计) 会被跳过.
+     *
+     * @param updates 待写入的数据.
+     * @return 如果所有数据都已提交则返回 true.
+     */
+    @Override
+    public boolean updateLocalStats(Collection<StatUpdate> updates) {
+        if (updates.isEmpty()) {
+            return true;
+        }
+        String serverName = this.serverName.get();
+
+        // 按统计分组, 每个表只准备一次语句.
+        // normalized 布局下所有数据写入 mss_stat_values; 尚未迁移完成的统计同时写入旧表, 保证迁移期间不丢数据.
+        PlaceholderRegistry stats = registry;
+        Map<StatDescriptor, List<StatUpdate>> updatesByStat = new LinkedHashMap<>();
+        List<StatUpdate> normalizedUpdates = new ArrayList<>();
+        // 实际写入的数据, 变更记录只包含这些数据
+        List<StatUpdate> written = new ArrayList<>(updates.size());
+        for (StatUpdate update : updates) {
+            StatDescriptor stat = stats.get(update.placeholderName());
+            if (stat == null) {
+                continue;
+            }
+            written.add(update);
+            if (layout == StorageLayout.NORMALIZED) {
+                normalizedUpdates.add(update);
+            }
+            if (!isNormalized(update.placeholderName())) {
+                updatesByStat.computeIfAbsent(stat, k -> new ArrayList<>()).add(update);
+            }
+        }
 
         try (Connection conn = dataSource.getConnection()) {
-            // 步骤 1: 确保服务器列存在
-            ensureServerColumnExists(conn, tableName, serverName);
+            // 步骤 1: 确保服务器列存在 (ALTER 会隐式提交, 必须在事务开始前完成)
+            for (StatDescriptor stat : updatesByStat.keySet()) {
+                ensureServerColumnExists(conn, stat.tableName(), serverName, stat.type());
+            }
 
-            // 步骤 2: 更新数据
+            // 步骤 2: 在一个事务中批量写入
             // 使用 INSERT ... ON DUPLICATE KEY UPDATE 来插入或更新.
             // 这要求 player_uuid 是主键或唯一键.
-            String sql = String.format(
-                    "INSERT INTO `%s` (player_uuid, player_name, `%s`) VALUES (?, ?, ?) " +
-                            "ON DUPLICATE KEY UPDATE player_name = VALUES(player_name), `%s` = VALUES(`%s`)",
-                    tableName, serverName, serverName, serverName
-            );
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<StatDescriptor, List<StatUpdate>> statUpdates : updatesByStat.entrySet()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(statUpdates.getKey().upsertSql(serverName))) {
+                        for (StatUpdate update : statUpdates.getValue()) {
+                            stmt.setString(1, update.playerUUID().toString());
+                            stmt.setString(2, update.playerName());
+                            stmt.setBigDecimal(3, update.value());
+                            stmt.setBigDecimal(4, update.value());
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                if (!normalizedUpdates.isEmpty()) {
+                    writeNormalizedBatch(conn, normalizedUpdates, stats, serverName);
+                }
+                if (changeFeedEnabled && !written.isEmpty()) {
+                    writeChanges(conn, written, serverName);
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "批量更新本地统计数据失败 (" + updates.size() + " 条)", e);
+            return false;
+        }
+    }
+
+    /**
+     * 生成宽表的写入语句: 插入或更新本服务器列, 并在同一条语句中维护总和列.
+     * 总和列的赋值写在服务器列之前: MySQL 按从左到右的顺序执行赋值, 因此计算总和时引用的是本服务器列的旧值.
+     * @param tableName  数据表名.
+     * @param serverName 本服务器名 (列名).
+     * @return 带 4 个参数 (player_uuid, player_name, 服务器列的值, 总和列的初始值) 的 SQL.
+     */
+    static String buildWideUpsertSql(String tableName, String serverName) {
+        return String.format(
+                "INSERT INTO `%1$s` (player_uuid, player_name, `%2$s`, `%3$s`) VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE player_name = VALUES(player_name), " +
+                        "`%3$s` = `%3$s` - IFNULL(`%2$s`, 0) + VALUES(`%2$s`), `%2$s` = VALUES(`%2$s`)",
+                tableName, serverName, TOTAL_COLUMN
+        );
+    }
+
+    /**
+     * 将一批数据的变更记录追加到 mss_changes. 调用方负责事务, 使变更记录与数据同时可见.
+     * @param conn       数据库连接.
+     * @param updates    已写入的数据.
+     * @param serverName 本服务器名.
+     * @throws SQLException SQL 异常.
+     */
+    private void writeChanges(Connection conn, Collection<StatUpdate> updates, String serverName) throws SQLException {
+        String sql = "INSERT INTO mss_changes (player_uuid, placeholder_name, server_id) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (StatUpdate update : updates) {
+                stmt.setString(1, update.playerUUID().toString());
+                stmt.setString(2, update.placeholderName());
+                stmt.setString(3, serverName);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, playerUUID.toString());
-                stmt.setString(2, playerName);
-                stmt.setString(3, value);
-                stmt.executeUpdate();
+    /**
+     * 获取 mss_changes 中当前最大的 seq. 启动时从这里开始读取, 之前的变化已经体现在数据库中.
+     * @return 最大的 seq; 表为空时返回 0, 查询失败时返回 -1.
+     */
+    @Override
+    public long getLatestChangeSeq() {
+        try (Connection conn = getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT IFNULL(MAX(seq), 0) FROM mss_changes")) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "获取变更记录位置失败", e);
+            return -1L;
+        }
+    }
+
+    /**
+     * 按 seq 顺序读取某个位置之后的变更记录. 只走主键范围扫描.
+     * @param afterSeq      只读取 seq 大于这个值的记录.
+     * @param limit         最多读取的条数.
+     * @param settleSeconds 写入超过这么多秒的记录视为已稳定 (之前的 seq 不会再出现).
+     * @return 变更记录, 查询失败时返回 null.
+     */
+    @Override
+    public List<ChangeEntry> getChangesSince(long afterSeq, int limit, long settleSeconds) {
+        String sql = "SELECT seq, player_uuid, placeholder_name, server_id, " +
+                "changed_at < TIMESTAMPADD(SECOND, -?, CURRENT_TIMESTAMP(3)) AS settled " +
+                "FROM mss_changes WHERE seq > ? ORDER BY seq LIMIT ?";
+        List<ChangeEntry> changes = new ArrayList<>();
+        try (Connection conn = getReadConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, settleSeconds);
+            stmt.setLong(2, afterSeq);
+            stmt.setInt(3, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new ChangeEntry(rs.getLong("seq"), UUID.fromString(rs.getString("player_uuid")),
+                            rs.getString("placeholder_name"), rs.getString("server_id"), rs.getBoolean("settled")));
+                }
             }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "读取变更记录失败", e);
+            return null;
+        }
+        return changes;
+    }
 
+    /**
+     * 删除过期的变更记录. 每次最多删除 limit 行, 避免长时间锁表.
+     * @param retentionSeconds 保留时间 (秒).
+     * @param limit            最多删除的行数.
+     * @return 删除的行数, 失败时返回 0.
+     */
+    @Override
+    public int pruneChanges(long retentionSeconds, int limit) {
+        String sql = "DELETE FROM mss_changes WHERE changed_at < TIMESTAMPADD(SECOND, -?, CURRENT_TIMESTAMP(3)) LIMIT ?";
+        try (Connection conn = dataSource.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, retentionSeconds);
+            stmt.setInt(2, limit);
+            return stmt.executeUpdate();
         } catch (SQLException e) {
-            plugin.getLogger().log(Level.SEVERE, "更新本地统计数据失败 for " + placeholderName, e);
+            logger.log(Level.WARNING, "清理变更记录失败", e);
+            return 0;
         }
     }
 
+    /**
+     * 将一批数据写入 mss_stat_values. 调用方负责事务.
+     * @param conn       数据库连接.
+     * @param updates    待写入的数据 (都已在 stats 中注册).
+     * @param stats      分组时使用的注册表.
+     * @param serverName 本服务器名.
+     * @throws SQLException SQL 异常.
+     */
+    private void writeNormalizedBatch(Connection conn, List<StatUpdate> updates, PlaceholderRegistry stats, String serverName) throws SQLException {
+        String sql = "INSERT INTO mss_stat_values (player_uuid, stat_id, server_id, player_name, value) VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE player_name = VALUES(player_name), value = VALUES(value)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (StatUpdate update : updates) {
+                int statId = stats.get(update.placeholderName()).id();
+                stmt.setString(1, update.playerUUID().toString());
+                stmt.setInt(2, statId);
+                stmt.setString(3, serverName);
+                stmt.setString(4, update.playerName());
+                stmt.setBigDecimal(5, update.value());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        // 在同一个事务中重新计算受影响的 (玩家, 统计) 的总和
+        String totalsSQL = "INSERT INTO mss_stat_totals (player_uuid, stat_id, player_name, total) " +
+                "SELECT player_uuid, stat_id, ?, SUM(value) FROM mss_stat_values WHERE player_uuid = ? AND stat_id = ? GROUP BY player_uuid, stat_id " +
+                "ON DUPLICATE KEY UPDATE player_name = VALUES(player_name), total = VALUES(total)";
+        try (PreparedStatement stmt = conn.prepareStatement(totalsSQL)) {
+            for (StatUpdate update : updates) {
+                int statId = stats.get(update.placeholderName()).id();
+                stmt.setString(1, update.playerName());
+                stmt.setString(2, update.playerUUID().toString());
+                stmt.setInt(3, statId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * 根据 mss_stat_values 重建 mss_stat_totals 中的总和.
+     * @param conn   数据库连接.
+     * @param statId 只重建这个统计; 为 null 时重建所有统计.
+     * @throws SQLException SQL 异常.
+     */
+    private void rebuildNormalizedTotals(Connection conn, Integer statId) throws SQLException {
+        String sql = "INSERT INTO mss_stat_totals (player_uuid, stat_id, player_name, total) " +
+                "SELECT player_uuid, stat_id, MAX(player_name), SUM(value) FROM mss_stat_values " +
+                (statId != null ? "WHERE stat_id = ? " : "") +
+                "GROUP BY player_uuid, stat_id " +
+                "ON DUPLICATE KEY UPDATE player_name = VALUES(player_name), total = VALUES(total)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (statId != null) {
+                stmt.setInt(1, statId);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * 将所有尚未迁移的统计从旧的宽表复制到 mss_stat_values.
+     * 在线迁移: 每批复制 MIGRATION_CHUNK_SIZE 行并单独提交, 已存在的行 (迁移期间双写的新数据) 不会被覆盖.
+     * 某个统计迁移完成后才切换为从 mss_stat_values 读取. 应在后台线程调用.
+     */
+    @Override
+    public void migrateToNormalizedLayout() {
+        if (layout != StorageLayout.NORMALIZED) {
+            return;
+        }
+        List<StatDescriptor> pending = new ArrayList<>();
+        for (StatDescriptor stat : loadPlaceholders().descriptors()) {
+            if (!normalizedStats.contains(stat.name())) {
+                pending.add(stat);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        logger.info(languageManager.get("console.migration.normalized_start", "count", String.valueOf(pending.size())));
+        for (StatDescriptor stat : pending) {
+            try {
+                migrateStatToNormalized(stat);
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "迁移表 " + stat.tableName() + " 到 normalized 布局失败.", e);
+            }
+        }
+        logger.info(languageManager.get("console.migration.normalized_finish"));
+    }
+
+    /**
+     * 将一个统计的旧表数据复制到 mss_stat_values, 并记录迁移完成.
+     * @param stat 统计.
+     * @throws SQLException SQL 异常.
+     */
+    private void migrateStatToNormalized(StatDescriptor stat) throws SQLException {
+        String tableName = stat.tableName();
+        List<String> serverColumns = getColumnsForTable(tableName);
+        long copied = 0;
+
+        try (Connection conn = dataSource.getConnection()) {
+            int statId = stat.id();
+            StatType type = stat.type();
+            if (!serverColumns.isEmpty()) {
+                String selectSQL = String.format("SELECT * FROM `%s` WHERE player_uuid > ? ORDER BY player_uuid LIMIT %d", tableName, MIGRATION_CHUNK_SIZE);
+                // 已存在的行保持不变: 它们是迁移开始后双写进来的新数据
+                String insertSQL = "INSERT INTO mss_stat_values (player_uuid, stat_id, server_id, player_name, value) VALUES (?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE value = value";
+                String lastUUID = "";
+                while (true) {
+                    int rows = 0;
+                    try (PreparedStatement select = conn.prepareStatement(selectSQL);
+                         PreparedStatement insert = conn.prepareStatement(insertSQL)) {
+                        select.setString(1, lastUUID);
+                        try (ResultSet rs = select.executeQuery()) {
+                            while (rs.next()) {
+                                rows++;
+                                lastUUID = rs.getString("player_uuid");
+                                String playerName = rs.getString("player_name");
+                                for (String column : serverColumns) {
+                                    BigDecimal value = type.parse(rs.getString(column));
+                                    if (value == null) {
+                                        continue;
+                                    }
+                                    insert.setString(1, lastUUID);
+                                    insert.setInt(2, statId);
+                                    insert.setString(3, column);
+                                    insert.setString(4, playerName);
+                                    insert.setBigDecimal(5, value);
+                                    insert.addBatch();
+                                }
+                            }
+                        }
+                        insert.executeBatch();
+                    }
+                    copied += rows;
+                    if (rows < MIGRATION_CHUNK_SIZE) {
+                        break;
+                    }
+                }
+            }
+            rebuildNormalizedTotals(conn, statId);
+            try (PreparedStatement marker = conn.prepareStatement("INSERT IGNORE INTO mss_meta (meta_key, meta_value) VALUES (?, ?)")) {
+                marker.setString(1, "normalized:" + stat.name());
+                marker.setString(2, serverName.get());
+                marker.executeUpdate();
+            }
+        }
+        normalizedStats.add(stat.name());
+        logger.info(languageManager.get("console.migration.normalized_table_done", "table", tableName, "rows", String.valueOf(copied)));
+    }
+
     /**
      * 在插件启动时，检查并升级所有已知的数据表结构.
      * 主要用于从旧版本迁移，例如添加 player_name 列.
      * @return 如果执行了任何表结构更改，则返回 true.
      */
+    @Override
     public boolean migrateAllTables() {
-        plugin.getLogger().info(plugin.getLanguageManager().get("console.migration.start"));
-        Set<String> placeholders = getSyncedPlaceholders();
+        logger.info(languageManager.get("console.migration.start"));
         boolean migrationPerformed = false;
 
-        for (String placeholderNameWithPct : placeholders) {
-            String placeholderName = placeholderNameWithPct.replace("%", "");
-            String tableName = getTableName(placeholderName);
+        // 迁移时发现含有小数的统计会被改为 DECIMAL, 之后需要重新加载占位符列表
+        boolean typeChanged = false;
+        for (StatDescriptor stat : loadPlaceholders().descriptors()) {
+            String tableName = stat.tableName();
+            StatType type = stat.type();
             try (Connection conn = dataSource.getConnection()) {
                 // 检查并添加 player_name 列 (用于从旧版本迁移)
                 if (!columnExists(conn, tableName, "player_name")) {
-                    plugin.getLogger().info(plugin.getLanguageManager().get("console.migration.migrating_table", "table", tableName, "column", "player_name"));
+                    logger.info(languageManager.get("console.migration.migrating_table", "table", tableName, "column", "player_name"));
                     try (Statement stmt = conn.createStatement()) {
                         String addPlayerNameColSQL = String.format("ALTER TABLE `%s` ADD COLUMN `player_name` VARCHAR(16) NOT NULL AFTER `player_uuid`", tableName);
                         stmt.executeUpdate(addPlayerNameColSQL);
                         migrationPerformed = true;
                     }
                 }
+                // 将旧版本的 VARCHAR 服务器列转换为数值列
+                StatType converted = convertColumnsToNumeric(conn, stat);
+                if (converted != null) {
+                    migrationPerformed = true;
+                    typeChanged |= converted != type;
+                    type = converted;
+                }
+                // 旧版本创建的服务器列默认值为 0, 其他服务器新建的行会被当作在本服务器上有记录
+                migrationPerformed |= dropServerColumnDefaults(conn, tableName);
+                // 添加总和列, 并根据已有的服务器列回填
+                if (!columnExists(conn, tableName, TOTAL_COLUMN)) {
+                    logger.info(languageManager.get("console.migration.migrating_table", "table", tableName, "column", TOTAL_COLUMN));
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate(String.format("ALTER TABLE `%s` ADD COLUMN `%s` %s NOT NULL DEFAULT 0",
+                                tableName, TOTAL_COLUMN, type.sqlType()));
+                        List<String> serverColumns = getColumnsForTable(tableName);
+                        if (!serverColumns.isEmpty()) {
+                            String sumExpression = serverColumns.stream()
+                                    .map(col -> String.format("IFNULL(`%s`, 0)", col))
+                                    .collect(Collectors.joining(" + "));
+                            stmt.executeUpdate(String.format("UPDATE `%s` SET `%s` = %s", tableName, TOTAL_COLUMN, sumExpression));
+                        }
+                        migrationPerformed = true;
+                    }
+                }
+                // 总和列的索引与新建的表同名; 单独检查, 这样添加列之后中断的迁移也会补上索引
+                if (!indexExists(conn, tableName, TOTAL_COLUMN)) {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate(String.format("CREATE INDEX `%s` ON `%s` (`%s`)", totalIndexName(tableName), tableName, TOTAL_COLUMN));
+                        migrationPerformed = true;
+                    }
+                }
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "检查或迁移表 " + tableName + " 失败。", e);
+                logger.log(Level.SEVERE, "检查或迁移表 " + tableName + " 失败。", e);
             }
         }
+        if (typeChanged) {
+            loadPlaceholders();
+        }
         return migrationPerformed;
     }
 
+    /**
+     * 原地将一个宽表中所有字符串类型的服务器列转换为数值类型.
+     * 先在字符串上清理数据 (去掉千位分隔符, 非数字改为 0), 再逐列转换.
+     * 旧版本的统计都被记录为 INTEGER; 如果已有数据中含有小数, 统计改为 DECIMAL, 迁移绝不截断数据.
+     * @param conn 数据库连接.
+     * @param stat 统计.
+     * @return 列被转换成的类型; 没有需要转换的列时返回 null.
+     * @throws SQLException SQL 异常.
+     */
+    private StatType convertColumnsToNumeric(Connection conn, StatDescriptor stat) throws SQLException {
+        String tableName = stat.tableName();
+        List<String> textColumns = new ArrayList<>();
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getColumns(conn.getCatalog(), null, tableName, null)) {
+            while (rs.next()) {
+                String columnName = rs.getString("COLUMN_NAME");
+                String typeName = rs.getString("TYPE_NAME").toUpperCase();
+                if (!isServerColumn(columnName)) {
+                    continue;
+                }
+                if (typeName.contains("CHAR") || typeName.contains("TEXT")) {
+                    textColumns.add(columnName);
+                }
+            }
+        }
+        if (textColumns.isEmpty()) {
+            return null;
+        }
+
+        StatType type = stat.type();
+        try (Statement stmt = conn.createStatement()) {
+            for (String column : textColumns) {
+                stmt.executeUpdate(String.format("UPDATE `%s` SET `%s` = REPLACE(TRIM(`%s`), ',', '')", tableName, column, column));
+                // NULL 表示该服务器没有记录, 保持不变
+                stmt.executeUpdate(String.format("UPDATE `%s` SET `%s` = '0' WHERE `%s` NOT REGEXP '^-?[0-9]+([.][0-9]+)?$'", tableName, column, column));
+            }
+            if (type == StatType.INTEGER && containsDecimals(stmt, tableName, textColumns)) {
+                type = StatType.DECIMAL;
+                try (PreparedStatement update = conn.prepareStatement("UPDATE mss_synced_placeholders SET value_type = ? WHERE id = ?")) {
+                    update.setString(1, type.name());
+                    update.setInt(2, stat.id());
+                    update.executeUpdate();
+                }
+                logger.info(languageManager.get("console.migration.detected_decimal", "placeholder", stat.placeholder(), "table", tableName));
+            }
+            logger.info(languageManager.get("console.migration.converting_numeric", "table", tableName, "type", type.sqlType()));
+            // 每列一条 ALTER: 只在一次性的迁移中执行, 换取与嵌入式数据库的兼容
+            for (String column : textColumns) {
+                stmt.executeUpdate(String.format("ALTER TABLE `%s` MODIFY COLUMN `%s` %s NULL", tableName, column, type.sqlType()));
+            }
+        }
+        return type;
+    }
+
+    /**
+     * 去掉宽表中服务器列的默认值, 使没有写入过的服务器列为 NULL.
+     * 已经存在的 0 无法与真实的 0 区分, 保持不变.
+     * @param conn      数据库连接.
+     * @param tableName 表名.
+     * @return 如果修改了任何列则返回 true.
+     * @throws SQLException SQL 异常.
+     */
+    private boolean dropServerColumnDefaults(Connection conn, String tableName) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, tableName, null)) {
+            while (rs.next()) {
+                String columnName = rs.getString("COLUMN_NAME");
+                String columnDefault = rs.getString("COLUMN_DEF");
+                if (isServerColumn(columnName) && columnDefault != null && !"NULL".equalsIgnoreCase(columnDefault)) {
+                    columns.add(columnName);
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            return false;
+        }
+        logger.info(languageManager.get("console.migration.dropping_server_defaults", "table", tableName));
+        try (Statement stmt = conn.createStatement()) {
+            for (String column : columns) {
+                stmt.executeUpdate(String.format("ALTER TABLE `%s` ALTER COLUMN `%s` DROP DEFAULT", tableName, column));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 检查已清理的文本列中是否有任何值带有小数点.
+     */
+    private static boolean containsDecimals(Statement stmt, String tableName, List<String> columns) throws SQLException {
+        String condition = columns.stream()
+                .map(column -> String.format("`%s` LIKE '%%.%%'", column))
+                .collect(Collectors.joining(" OR "));
+        try (ResultSet rs = stmt.executeQuery(String.format("SELECT 1 FROM `%s` WHERE %s LIMIT 1", tableName, condition))) {
+            return rs.next();
+        }
+    }
+
     /**
      * 检查数据库表中是否存在指定的列.
      * @param conn 数据库连接.
@@ -332,12 +1313,46 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * 检查数据表中是否有以指定列开头的索引.
+     * @param conn       数据库连接.
+     * @param tableName  表名.
+     * @param columnName 列名.
+     * @return 如果存在这样的索引则返回 true.
+     * @throws SQLException SQL 异常.
+     */
+    private boolean indexExists(Connection conn, String tableName, String columnName) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, tableName, false, false)) {
+            while (rs.next()) {
+                if (rs.getShort("ORDINAL_POSITION") == 1 && columnName.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 宽表中总和列索引的名称. 新建的表和迁移的旧表使用同一个名称.
+     * 名称包含表名: MySQL 的索引名只在表内唯一, H2 等数据库则要求整个库内唯一.
+     * @param tableName 表名.
+     * @return 不超过 64 个字符的索引名.
+     */
+    static String totalIndexName(String tableName) {
+        String name = "idx_" + tableName + "_total";
+        if (name.length() <= 64) {
+            return name;
+        }
+        // 超出 MySQL 的标识符长度限制时截断, 并用表名的哈希区分截断后相同的名称
+        return name.substring(0, 55) + "_" + String.format("%08x", tableName.hashCode());
+    }
+
     /**
      * 根据占位符名称生成一个安全的表名.
      * @param placeholderName 占位符名称 (不含 %).
      * @return 安全的、可用于SQL的表名.
      */
-    private String getTableName(String placeholderName) {
+    static String getTableName(String placeholderName) {
         // 移除百分号，以防万一
         String cleanName = placeholderName.replace("%", "");
         // 将所有不符合规则的字符替换为下划线
@@ -1,6 +1,7 @@
 package com.myname.multisyncstats;
 
 import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
@@ -11,10 +12,13 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 /**
  * 负责加载和管理插件的语言文件.
+ * 加载时把每条消息预先解析为模板 (颜色代码已转换), get 只做一次查找和一次拼接.
  */
 public class LanguageManager {
 
@@ -22,6 +26,8 @@ public class LanguageManager {
     private FileConfiguration langConfig;
     private String selectedLang;
     private final List<String> knownLanguages = Arrays.asList("zh_CN", "en_US");
+    // 路径 -> 模板. 重新加载时整体替换; 语言文件中不存在的路径在第一次请求时补充错误提示模板
+    private volatile Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
 
     /**
      * 构造函数.
@@ -32,10 +38,22 @@ public class LanguageManager {
         this.selectedLang = plugin.getConfig().getString("language", "zh_CN");
     }
     
+    /**
+     * 使用已经加载好的语言配置, 不读写插件目录.
+     * 供基准测试和模拟器使用; 这样创建的实例调用 reload, updateAllLanguageFiles 和 loadSelectedLanguage 会抛出 IllegalStateException.
+     * @param langConfig 语言配置.
+     */
+    public LanguageManager(FileConfiguration langConfig) {
+        this.plugin = null;
+        this.langConfig = langConfig;
+        compileTemplates();
+    }
+    
     /**
      * 重新加载语言文件，以应用配置更改.
      */
     public void reload() {
+        requirePlugin();
         this.selectedLang = plugin.getConfig().getString("language", "zh_CN");
         loadSelectedLanguage();
     }
@@ -44,6 +62,7 @@ public class LanguageManager {
      * 检查所有已知的语言文件，如果不存在则创建，如果缺少条目则补全.
      */
     public void updateAllLanguageFiles() {
+        requirePlugin();
         for (String langName : knownLanguages) {
             File langFile = new File(plugin.getDataFolder(), "lang" + File.separator + langName + ".yml");
             
@@ -87,10 +106,12 @@ public class LanguageManager {
      * 将用户在 config.yml 中选择的语言加载到内存中.
      */
     public void loadSelectedLanguage() {
+        requirePlugin();
         File langFile = new File(plugin.getDataFolder(), "lang" + File.separator + selectedLang + ".yml");
         if (!langFile.exists()) {
             plugin.getLogger().severe("严重错误: 选定的语言文件 " + selectedLang + ".yml 不存在! 将使用默认值。");
             langConfig = new YamlConfiguration();
+            compileTemplates();
             return;
         }
         langConfig = YamlConfiguration.loadConfiguration(langFile);
@@ -103,6 +124,50 @@ public class LanguageManager {
         } catch (IOException e) {
              plugin.getLogger().log(Level.SEVERE, "无法加载默认语言文件作为备用: " + selectedLang, e);
         }
+        compileTemplates();
+    }
+
+    /**
+     * 不依赖插件创建的实例没有数据目录, 不能读写语言文件.
+     */
+    private void requirePlugin() {
+        if (plugin == null) {
+            throw new IllegalStateException("此 LanguageManager 不依赖插件创建, 不能读写语言文件");
+        }
+    }
+
+    /**
+     * 将当前语言配置 (包括备用的默认值) 中的所有消息解析为模板.
+     */
+    private void compileTemplates() {
+        Map<String, MessageTemplate> compiled = new ConcurrentHashMap<>();
+        // 先加入默认值, 再由用户文件中的同名条目覆盖
+        addTemplates(compiled, langConfig.getDefaults());
+        addTemplates(compiled, langConfig);
+        templates = compiled;
+    }
+
+    private static void addTemplates(Map<String, MessageTemplate> compiled, ConfigurationSection section) {
+        if (section == null) {
+            return;
+        }
+        for (String key : section.getKeys(true)) {
+            if (section.isString(key)) {
+                compiled.put(key, MessageTemplate.compile(ChatColor.translateAlternateColorCodes('&', section.getString(key))));
+            }
+        }
+    }
+
+    /**
+     * 获取某个路径的模板. 路径不存在时返回错误提示模板.
+     */
+    private MessageTemplate template(String path) {
+        MessageTemplate template = templates.get(path);
+        if (template == null) {
+            template = templates.computeIfAbsent(path, missing ->
+                    MessageTemplate.compile(ChatColor.translateAlternateColorCodes('&', "&c语言文件错误: 未找到路径 '" + missing + "'")));
+        }
+        return template;
     }
 
     /**
@@ -111,8 +176,7 @@ public class LanguageManager {
      * @return 经过颜色代码转换的字符串.
      */
     public String get(String path) {
-        String message = langConfig.getString(path, "&c语言文件错误: 未找到路径 '" + path + "'");
-        return ChatColor.translateAlternateColorCodes('&', message);
+        return template(path).text();
     }
     
     /**
@@ -122,14 +186,6 @@ public class LanguageManager {
      * @return 格式化后的字符串.
      */
     public String get(String path, String... replacements) {
-        String message = get(path);
-        for (int i = 0; i < replacements.length; i += 2) {
-            if (i + 1 < replacements.length) {
-                String key = "{" + replacements[i] + "}";
-                String value = replacements[i+1];
-                message = message.replace(key, value);
-            }
-        }
-        return message;
+        return template(path).format(replacements);
     }
 } 
\ No newline at end of file
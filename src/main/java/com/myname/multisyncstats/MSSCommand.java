@@ -1,5 +1,14 @@
 package com.myname.multisyncstats;
 
+import com.myname.multisyncstats.cache.StatCache;
+import com.myname.multisyncstats.metrics.LatencyHistogram;
+import com.myname.multisyncstats.metrics.PluginMetrics;
+import com.myname.multisyncstats.metrics.PoolStats;
+import com.myname.multisyncstats.sync.DirtyPlayerTracker;
+import com.myname.multisyncstats.sync.PlaceholderProfiler;
+import com.myname.multisyncstats.sync.SyncCadence;
+import com.myname.multisyncstats.sync.SyncScheduler;
+import com.myname.multisyncstats.sync.WriteBehindQueue;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -11,7 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 import me.clip.placeholderapi.PlaceholderAPI;
@@ -19,12 +28,12 @@ import me.clip.placeholderapi.PlaceholderAPI;
 public class MSSCommand implements CommandExecutor, TabCompleter {
 
     private final MultiSyncStats plugin;
-    private final DatabaseManager dbManager;
+    private final StatStorage dbManager;
     private final LanguageManager lang;
 
     public MSSCommand(MultiSyncStats plugin) {
         this.plugin = plugin;
-        this.dbManager = plugin.getDatabaseManager();
+        this.dbManager = plugin.getStorage();
         this.lang = plugin.getLanguageManager();
     }
 
@@ -47,6 +56,9 @@ public class MSSCommand implements CommandExecutor, TabCompleter {
             case "list":
                 handleList(sender);
                 break;
+            case "stats":
+                handleStats(sender);
+                break;
             case "reload":
                 // 让主插件处理重载逻辑
                 plugin.onReload();
@@ -65,12 +77,19 @@ public class MSSCommand implements CommandExecutor, TabCompleter {
             return;
         }
         String placeholder = args[1];
+        // 可选的第三个参数: 数值类型 (integer / decimal)
+        StatType explicitType = args.length >= 3 ? StatType.fromName(args[2]) : null;
+        if (args.length >= 3 && explicitType == null) {
+            sender.sendMessage(lang.get("command.add.invalid_type", "type", args[2]));
+            sender.sendMessage(lang.get("command.add.usage"));
+            return;
+        }
 
         // 统一转换为小写，以避免大小写问题
         String normalizedPlaceholder = placeholder.toLowerCase();
 
         // 检查占位符是否已存在
-        if (plugin.getSyncedPlaceholders().contains(normalizedPlaceholder)) {
+        if (plugin.getPlaceholderRegistry().contains(normalizedPlaceholder.replace("%", ""))) {
             sender.sendMessage(lang.get("command.add.already_exists", "placeholder", normalizedPlaceholder));
             return;
         }
@@ -86,7 +105,7 @@ public class MSSCommand implements CommandExecutor, TabCompleter {
         // 如果没有可用的玩家来进行测试，我们无法进行验证
         if (testPlayer == null) {
             sender.sendMessage(lang.get("command.add.validation.no_player"));
-            addPlaceholderToDb(sender, normalizedPlaceholder);
+            addPlaceholderToDb(sender, normalizedPlaceholder, explicitType != null ? explicitType : StatType.INTEGER);
             return;
         }
 
@@ -99,27 +118,26 @@ public class MSSCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        // 检查返回值是否为数值
-        try {
-            // 替换掉千位分隔符(,)以正确解析
-            Double.parseDouble(value.replace(",", ""));
-            
-            // 验证通过，发送提示信息并添加到数据库
-            sender.sendMessage(lang.get("command.add.validation.success", "value", value));
-            addPlaceholderToDb(sender, normalizedPlaceholder);
-
-        } catch (NumberFormatException e) {
+        // 检查返回值是否为数值 (兼容千位分隔符)
+        if (StatType.DECIMAL.parse(value) == null) {
             sender.sendMessage(lang.get("command.add.validation.not_numeric", "placeholder", normalizedPlaceholder, "value", value));
+            return;
         }
+
+        // 未指定类型时, 根据样本值推断是整数还是小数
+        StatType type = explicitType != null ? explicitType : StatType.detect(value);
+        // 验证通过，发送提示信息并添加到数据库
+        sender.sendMessage(lang.get("command.add.validation.success", "value", value));
+        addPlaceholderToDb(sender, normalizedPlaceholder, type);
     }
 
-    private void addPlaceholderToDb(CommandSender sender, String placeholder) {
+    private void addPlaceholderToDb(CommandSender sender, String placeholder, StatType type) {
         Runnable dbTask = () -> {
-            boolean success = dbManager.addPlaceholder(placeholder);
+            boolean success = dbManager.addPlaceholder(placeholder, type);
             Runnable callback = () -> {
                 if (success) {
+                    // addPlaceholder 已经在后台线程重新加载了注册表
                     sender.sendMessage(lang.get("command.add.db_success", "placeholder", placeholder));
-                    plugin.reloadPlaceholdersFromDB(); // 更新缓存
                 } else {
                     sender.sendMessage(lang.get("command.add.db_fail"));
                 }
@@ -157,7 +175,6 @@ public class MSSCommand implements CommandExecutor, TabCompleter {
                 if (success) {
                     sender.sendMessage(lang.get("command.remove.success", "placeholder", placeholder));
                     sender.sendMessage(lang.get("command.remove.data_not_deleted_notice"));
-                    plugin.reloadPlaceholdersFromDB(); // 更新缓存
                 } else {
                     sender.sendMessage(lang.get("command.remove.not_exists"));
                 }
@@ -184,7 +201,7 @@ public class MSSCommand implements CommandExecutor, TabCompleter {
 
     private void handleList(CommandSender sender) {
         Runnable dbTask = () -> {
-            Set<String> placeholders = dbManager.getSyncedPlaceholders();
+            List<String> placeholders = dbManager.loadPlaceholders().placeholders();
             Runnable callback = () -> {
                 if (placeholders.isEmpty()) {
                     sender.sendMessage(lang.get("command.list.empty"));
@@ -213,25 +230,129 @@ public class MSSCommand implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void handleStats(CommandSender sender) {
+        // 所有数据都在内存中, 直接在当前线程读取
+        PluginMetrics metrics = plugin.getMetrics();
+        sender.sendMessage(lang.get("command.stats.header"));
+        sendHistogram(sender, "command.stats.sync_cycle", metrics.syncCycle());
+        sendHistogram(sender, "command.stats.papi_resolve", metrics.papiResolve());
+        sendHistogram(sender, "command.stats.db_write", metrics.dbWrite());
+        sendHistogram(sender, "command.stats.db_read", metrics.dbRead());
+
+        WriteBehindQueue queue = plugin.getWriteBehindQueue();
+        sender.sendMessage(lang.get("command.stats.queue",
+                "pending", String.valueOf(queue.pendingCount()),
+                "written", String.valueOf(queue.getWrittenCount()),
+                "merged", String.valueOf(queue.getMergedCount()),
+                "dropped", String.valueOf(queue.getDroppedCount()),
+                "failed", String.valueOf(queue.getFailedBatchCount())));
+
+        StatCache cache = plugin.getStatCache();
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        double hitRate = hits + misses == 0 ? 0.0 : hits * 100.0 / (hits + misses);
+        sender.sendMessage(lang.get("command.stats.cache",
+                "size", String.valueOf(cache.size()),
+                "hit_rate", String.format(Locale.ROOT, "%.1f", hitRate),
+                "hits", String.valueOf(hits),
+                "misses", String.valueOf(misses)));
+
+        SyncScheduler scheduler = plugin.getSyncScheduler();
+        SyncCadence cadence = scheduler != null ? scheduler.getCadence() : null;
+        if (cadence != null) {
+            SyncCadence.Summary summary = cadence.summarize(plugin.getPlaceholderRegistry().descriptors());
+            long cycleSeconds = scheduler.getIntervalSeconds();
+            sender.sendMessage(lang.get("command.stats.cadence",
+                    "min", String.valueOf(cycleSeconds * cadence.getMinCycles()),
+                    "max", String.valueOf(cycleSeconds * cadence.getMaxCycles()),
+                    "at_min", String.valueOf(summary.atMin()),
+                    "at_max", String.valueOf(summary.atMax()),
+                    "total", String.valueOf(summary.total())));
+        }
+        DirtyPlayerTracker dirtyPlayers = plugin.getDirtyPlayerTracker();
+        if (dirtyPlayers != null) {
+            sender.sendMessage(lang.get("command.stats.event_sync",
+                    "dirty", String.valueOf(dirtyPlayers.dirtyCount()),
+                    "online", String.valueOf(Bukkit.getOnlinePlayers().size()),
+                    "synced", String.valueOf(dirtyPlayers.getSyncedCount()),
+                    "skipped", String.valueOf(dirtyPlayers.getSkippedCount())));
+        }
+        List<PlaceholderProfiler.Stats> worst = scheduler != null ? scheduler.getProfiler().getWorst(5) : List.of();
+        if (!worst.isEmpty()) {
+            sender.sendMessage(lang.get("command.stats.placeholders_header"));
+            for (PlaceholderProfiler.Stats stats : worst) {
+                sender.sendMessage(lang.get(stats.slow() ? "command.stats.placeholder_slow" : "command.stats.placeholder",
+                        "placeholder", stats.placeholder(),
+                        "avg", String.format(Locale.ROOT, "%.0f", stats.averageMicros()),
+                        "max", String.format(Locale.ROOT, "%.0f", stats.maxMicros()),
+                        "count", String.valueOf(stats.samples())));
+            }
+        }
+
+        PoolStats pool = dbManager.getPoolStats();
+        if (pool != null) {
+            sender.sendMessage(lang.get("command.stats.pool",
+                    "active", String.valueOf(pool.active()),
+                    "idle", String.valueOf(pool.idle()),
+                    "total", String.valueOf(pool.total()),
+                    "waiting", String.valueOf(pool.waiting())));
+        }
+        if (dbManager.isReadFallbackActive()) {
+            sender.sendMessage(lang.get("command.stats.read_pool_fallback"));
+        } else {
+            PoolStats readPool = dbManager.getReadPoolStats();
+            if (readPool != null) {
+                sender.sendMessage(lang.get("command.stats.read_pool",
+                        "active", String.valueOf(readPool.active()),
+                        "idle", String.valueOf(readPool.idle()),
+                        "total", String.valueOf(readPool.total()),
+                        "waiting", String.valueOf(readPool.waiting())));
+            }
+        }
+    }
+
+    private void sendHistogram(CommandSender sender, String labelKey, LatencyHistogram histogram) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        sender.sendMessage(lang.get("command.stats.histogram",
+                "name", lang.get(labelKey),
+                "count", String.valueOf(snapshot.count()),
+                "avg", formatMillis(snapshot.averageMillis()),
+                "p50", formatMillis(snapshot.percentileMillis(0.50)),
+                "p95", formatMillis(snapshot.percentileMillis(0.95)),
+                "p99", formatMillis(snapshot.percentileMillis(0.99)),
+                "max", formatMillis(snapshot.maxMillis())));
+    }
+
+    private static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.2f", millis);
+    }
+
     private void sendHelp(CommandSender sender) {
         sender.sendMessage(lang.get("command.help.header", "version", plugin.getDescription().getVersion()));
         sender.sendMessage(lang.get("command.help.add"));
         sender.sendMessage(lang.get("command.help.remove"));
         sender.sendMessage(lang.get("command.help.list"));
+        sender.sendMessage(lang.get("command.help.stats"));
         sender.sendMessage(lang.get("command.help.reload"));
     }
 
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("add", "remove", "list", "reload").stream()
+            return Arrays.asList("add", "remove", "list", "stats", "reload").stream()
                     .filter(s -> s.startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         }
 
+        if (args.length == 3 && args[0].equalsIgnoreCase("add")) {
+            return Arrays.asList("integer", "decimal").stream()
+                    .filter(s -> s.startsWith(args[2].toLowerCase()))
+                    .collect(Collectors.toList());
+        }
+
         if (args.length == 2 && args[0].equalsIgnoreCase("remove")) {
             // Tab补全直接使用主插件的缓存，避免数据库查询
-            return plugin.getSyncedPlaceholders().stream()
+            return plugin.getPlaceholderRegistry().placeholders().stream()
                     .filter(s -> s.startsWith(args[1].toLowerCase()))
                     .collect(Collectors.toList());
         }
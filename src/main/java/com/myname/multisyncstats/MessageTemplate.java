@@ -0,0 +1,117 @@
+package com.myname.multisyncstats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预先解析的语言模板. 颜色代码在加载时已转换, 文本被拆分为固定片段和 {key} 占位符.
+ * 格式化时只遍历一次片段, 写入预先估算好容量的 StringBuilder; 没有占位符的模板直接返回同一个字符串.
+ */
+final class MessageTemplate {
+
+    // 固定片段, 长度比 keys 多 1: literals[0] keys[0] literals[1] keys[1] ... literals[n]
+    private final String[] literals;
+    // 占位符名称 (不带花括号)
+    private final String[] keys;
+    // 未替换任何占位符时的完整文本, 也是没有占位符时的渲染结果
+    private final String text;
+    private final int literalLength;
+
+    private MessageTemplate(String[] literals, String[] keys, String text) {
+        this.literals = literals;
+        this.keys = keys;
+        this.text = text;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 解析一条已转换颜色代码的消息. 只有由字母, 数字和下划线组成的 {key} 被视为占位符, 其他花括号保持原样.
+     * @param text 消息文本.
+     * @return 模板.
+     */
+    static MessageTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        int literalStart = 0;
+        int open = text.indexOf('{');
+        while (open >= 0) {
+            int close = text.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            if (isKey(text, open + 1, close)) {
+                literals.add(text.substring(literalStart, open));
+                keys.add(text.substring(open + 1, close));
+                literalStart = close + 1;
+                open = text.indexOf('{', literalStart);
+            } else {
+                open = text.indexOf('{', open + 1);
+            }
+        }
+        literals.add(text.substring(literalStart));
+        return new MessageTemplate(literals.toArray(new String[0]), keys.toArray(new String[0]), text);
+    }
+
+    private static boolean isKey(String text, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!(c == '_' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 未替换任何占位符的文本.
+     */
+    String text() {
+        return text;
+    }
+
+    /**
+     * 用给定的值替换占位符. 没有对应值的占位符保留为 {key}.
+     * @param replacements 占位符名称和值, 成对出现. 多余的单个参数被忽略.
+     * @return 格式化后的字符串.
+     */
+    String format(String... replacements) {
+        if (keys.length == 0) {
+            return text;
+        }
+        int capacity = literalLength;
+        for (int i = 1; i < replacements.length; i += 2) {
+            String value = replacements[i];
+            capacity += value != null ? value.length() : 4;
+        }
+        StringBuilder out = new StringBuilder(capacity);
+        for (int i = 0; i < keys.length; i++) {
+            out.append(literals[i]);
+            String value = find(keys[i], replacements);
+            if (value != null) {
+                out.append(value);
+            } else {
+                out.append('{').append(keys[i]).append('}');
+            }
+        }
+        out.append(literals[keys.length]);
+        return out.toString();
+    }
+
+    private static String find(String key, String[] replacements) {
+        // 参数通常只有 1 到 3 对, 线性查找比建立 Map 更快
+        for (int i = 0; i + 1 < replacements.length; i += 2) {
+            if (key.equals(replacements[i])) {
+                String value = replacements[i + 1];
+                return value != null ? value : "null";
+            }
+        }
+        return null;
+    }
+}
@@ -1,32 +1,55 @@
 package com.myname.multisyncstats;
 
+import com.myname.multisyncstats.cache.StatCache;
+import com.myname.multisyncstats.leaderboard.LeaderboardManager;
+import com.myname.multisyncstats.leaderboard.RankManager;
+import com.myname.multisyncstats.listener.PlayerActivityListener;
+import com.myname.multisyncstats.listener.PlayerConnectionListener;
+import com.myname.multisyncstats.metrics.PluginMetrics;
+import com.myname.multisyncstats.metrics.PoolStats;
+import com.myname.multisyncstats.metrics.PrometheusFileDumper;
+import com.myname.multisyncstats.placeholder.ExpansionContext;
 import com.myname.multisyncstats.placeholder.MssExpansion;
-import me.clip.placeholderapi.PlaceholderAPI;
+import com.myname.multisyncstats.sync.ChangeFeedPoller;
+import com.myname.multisyncstats.sync.DirtyPlayerTracker;
+import com.myname.multisyncstats.sync.PlaceholderProfiler;
+import com.myname.multisyncstats.sync.SyncCadence;
+import com.myname.multisyncstats.sync.SyncScheduler;
+import com.myname.multisyncstats.sync.WriteBehindQueue;
+import com.myname.multisyncstats.sync.WrittenValueTracker;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
+import java.math.BigDecimal;
 import java.sql.SQLException;
-import java.util.Collections;
-import java.util.Set;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.ToIntFunction;
 
 
 /**
  * 插件主类.
  */
-public final class MultiSyncStats extends JavaPlugin {
+public final class MultiSyncStats extends JavaPlugin implements ExpansionContext {
 
-    private DatabaseManager databaseManager;
+    private StatStorage storage;
     private String serverName;
-    private Set<String> syncedPlaceholders = Collections.emptySet();
-    private Object syncTask;
+    private SyncScheduler syncScheduler;
+    // 事件驱动同步的活跃玩家记录, 未启用时为 null. 事件监听器在区域线程上读取
+    private volatile DirtyPlayerTracker dirtyPlayerTracker;
+    private WriteBehindQueue writeBehindQueue;
     private MssExpansion mssExpansion;
+    private StatCache statCache;
+    private LeaderboardManager leaderboardManager;
+    private RankManager rankManager;
+    private ChangeFeedPoller changeFeedPoller;
+    private final WrittenValueTracker writtenValueTracker = new WrittenValueTracker();
+    // 指标在重载后继续累计, 因此只创建一次
+    private final PluginMetrics metrics = new PluginMetrics();
+    private PrometheusFileDumper metricsDumper;
     private LanguageManager languageManager;
     private boolean isPaperOrFolia;
 
@@ -35,16 +58,17 @@ public final class MultiSyncStats extends JavaPlugin {
     public void onEnable() {
         // 1. 更新并加载配置文件
         updateConfig();
-        if (!loadAndValidateConfig()) {
-            getServer().getPluginManager().disablePlugin(this);
-            return;
-        }
 
-        // 1.1 初始化语言管理器 (必须在任何使用它的代码之前)
+        // 1.1 初始化语言管理器 (必须在任何使用它的代码之前, 包括配置验证)
         languageManager = new LanguageManager(this);
         languageManager.updateAllLanguageFiles();
         languageManager.loadSelectedLanguage();
 
+        if (!loadAndValidateConfig()) {
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+
         // 检查服务器是否为 Paper 或 Folia
         try {
             Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
@@ -66,13 +90,18 @@ public final class MultiSyncStats extends JavaPlugin {
 
         // 2. 初始化数据库连接
         try {
-            databaseManager = new DatabaseManager(this);
+            storage = createStorage();
             getLogger().info(languageManager.get("console.db.init_success"));
         } catch (SQLException e) {
             String errorMessage = e.getMessage().toLowerCase();
             getLogger().severe("==============================================================");
             getLogger().severe(languageManager.get("console.db.connection_failed"));
-            if (errorMessage.contains("access denied")) {
+            if (SqliteStorage.DRIVER_MISSING_STATE.equals(e.getSQLState())) {
+                getLogger().severe(languageManager.get("console.db.sqlite_driver_missing"));
+            } else if (SqliteStorage.VERSION_TOO_OLD_STATE.equals(e.getSQLState())) {
+                getLogger().severe(languageManager.get("console.db.sqlite_version_too_old", "required", SqliteStorage.minVersion()));
+                getLogger().severe(languageManager.get("console.db.error_details", "error", e.getMessage()));
+            } else if (errorMessage.contains("access denied")) {
                 getLogger().severe(languageManager.get("console.db.access_denied"));
             } else if (errorMessage.contains("communications link failure") || errorMessage.contains("could not create connection")) {
                 getLogger().severe(languageManager.get("console.db.link_failure"));
@@ -87,21 +116,39 @@ public final class MultiSyncStats extends JavaPlugin {
             return;
         }
         
+        // 2.1 初始化占位符读取缓存和排行榜
+        statCache = createStatCache();
+        leaderboardManager = createLeaderboardManager();
+        rankManager = new RankManager(getLogger(), storage, getConfig().getLong("ranks.rebuild-seconds", 300));
+        changeFeedPoller = createChangeFeedPoller();
+        writeBehindQueue = createWriteBehindQueue();
+        registerMetrics();
+        metricsDumper = createMetricsDumper();
+
         // 3. 从数据库加载需要同步的占位符列表 (同步)
         reloadPlaceholdersFromDB();
-        getLogger().info(languageManager.get("console.db.placeholders_loaded", "count", String.valueOf(this.syncedPlaceholders.size())));
+        getLogger().info(languageManager.get("console.db.placeholders_loaded", "count", String.valueOf(getPlaceholderRegistry().size())));
 
         // 4. 检查并迁移所有数据表结构
-        boolean migrationPerformed = databaseManager.migrateAllTables();
+        boolean migrationPerformed = storage.migrateAllTables();
         if (migrationPerformed) {
             getLogger().info(languageManager.get("console.migration.finish"));
         } else {
             getLogger().info(languageManager.get("console.migration.no_migration_needed"));
         }
 
+        // 4.1 normalized 布局: 在后台将旧表数据迁移到 mss_stat_values, 迁移期间继续从旧表读取
+        if (storage.getLayout() == StorageLayout.NORMALIZED) {
+            if (isPaperOrFolia) {
+                getServer().getAsyncScheduler().runNow(this, task -> storage.migrateToNormalizedLayout());
+            } else {
+                getServer().getScheduler().runTaskAsynchronously(this, () -> storage.migrateToNormalizedLayout());
+            }
+        }
+
         // 5. 注册 PAPI 扩展
         if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI")) {
-            mssExpansion = new MssExpansion(this);
+            mssExpansion = new MssExpansion(this, getDescription().getVersion());
             mssExpansion.register();
             
             getLogger().info(languageManager.get("console.papi.register_success"));
@@ -115,6 +162,14 @@ public final class MultiSyncStats extends JavaPlugin {
         MSSCommand mssCommand = new MSSCommand(this);
         getCommand("mss").setExecutor(mssCommand);
         getCommand("mss").setTabCompleter(mssCommand);
+
+        // 6.1 注册事件监听器, 并跟踪已在线的玩家 (例如通过插件管理器热加载时)
+        getServer().getPluginManager().registerEvents(new PlayerConnectionListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlayerActivityListener(this), this);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            writtenValueTracker.track(player.getUniqueId());
+            prefetchPlayer(player.getUniqueId());
+        }
         
         // 7. 启动后台同步任务
         startSyncTask();
@@ -125,18 +180,40 @@ public final class MultiSyncStats extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        if (syncTask != null) {
-            if (syncTask instanceof BukkitTask) {
-                ((BukkitTask) syncTask).cancel();
-            } else if (syncTask instanceof ScheduledTask) {
-                ((ScheduledTask) syncTask).cancel();
+        if (syncScheduler != null) {
+            // 本周期已经解析的数据也要写入
+            List<StatUpdate> resolved = syncScheduler.stop();
+            if (writeBehindQueue != null) {
+                writeBehindQueue.submit(resolved);
+                // 排队但尚未解析的玩家已被丢弃, 在这里解析所有在线玩家的最新数据; 较新的值会替换队列中的旧值
+                writeBehindQueue.submit(resolveOnlinePlayers());
             }
         }
         if (mssExpansion != null) {
             mssExpansion.unregister();
         }
-        if (databaseManager != null) {
-            databaseManager.close();
+        if (writeBehindQueue != null) {
+            // 在关闭数据库连接池之前, 等待队列中的数据写入完成
+            awaitWriteBehindDrained();
+            writeBehindQueue.shutdown();
+        }
+        if (statCache != null) {
+            statCache.shutdown();
+        }
+        if (leaderboardManager != null) {
+            leaderboardManager.shutdown();
+        }
+        if (rankManager != null) {
+            rankManager.shutdown();
+        }
+        if (changeFeedPoller != null) {
+            changeFeedPoller.shutdown();
+        }
+        if (metricsDumper != null) {
+            metricsDumper.shutdown();
+        }
+        if (storage != null) {
+            storage.close();
         }
         // 添加 null 检查以提高健壮性
         if (languageManager != null) {
@@ -152,12 +229,8 @@ public final class MultiSyncStats extends JavaPlugin {
     public void onReload() {
         getLogger().info(languageManager.get("console.reload.start"));
         // 停止并等待旧任务完成
-        if (syncTask != null) {
-            if (syncTask instanceof BukkitTask) {
-                ((BukkitTask) syncTask).cancel();
-            } else if (syncTask instanceof ScheduledTask) {
-                ((ScheduledTask) syncTask).cancel();
-            }
+        if (syncScheduler != null) {
+            writeBehindQueue.offer(syncScheduler.stop());
         }
         // 重新加载 yml 配置
         reloadConfig();
@@ -169,11 +242,35 @@ public final class MultiSyncStats extends JavaPlugin {
         }
         // 重新加载语言文件
         languageManager.reload();
+        if (mssExpansion != null) {
+            mssExpansion.reloadSettings();
+        }
+        // 按新配置重建读取缓存和排行榜
+        statCache.shutdown();
+        statCache = createStatCache();
+        leaderboardManager.shutdown();
+        leaderboardManager = createLeaderboardManager();
+        rankManager.shutdown();
+        rankManager = new RankManager(getLogger(), storage, getConfig().getLong("ranks.rebuild-seconds", 300));
+        if (changeFeedPoller != null) {
+            changeFeedPoller.shutdown();
+        }
+        changeFeedPoller = createChangeFeedPoller();
+        if (metricsDumper != null) {
+            metricsDumper.shutdown();
+        }
+        metricsDumper = createMetricsDumper();
+        // 先等待正在进行的写入完成: 关闭旧队列会中断写入线程, 而正在写入的批次已经不在待写入数据中
+        // 新队列只接管超时后仍未写入的数据
+        awaitWriteBehindDrained();
+        WriteBehindQueue oldQueue = writeBehindQueue;
+        writeBehindQueue = createWriteBehindQueue();
+        writeBehindQueue.submit(oldQueue.shutdown());
         // 从数据库重新加载占位符列表 (同步)
         reloadPlaceholdersFromDB();
-        getLogger().info(languageManager.get("console.db.placeholders_loaded", "count", String.valueOf(this.syncedPlaceholders.size())));
+        getLogger().info(languageManager.get("console.db.placeholders_loaded", "count", String.valueOf(getPlaceholderRegistry().size())));
         // 重新检查和迁移数据表
-        boolean migrationPerformedOnReload = databaseManager.migrateAllTables();
+        boolean migrationPerformedOnReload = storage.migrateAllTables();
         if (migrationPerformedOnReload) {
             getLogger().info(languageManager.get("console.migration.finish"));
         } else {
@@ -184,6 +281,16 @@ public final class MultiSyncStats extends JavaPlugin {
         getLogger().info(languageManager.get("console.reload.success"));
     }
 
+    /**
+     * 等待写入队列中的数据写入完成, 最多等待 write-behind.shutdown-timeout-ms. 超时时输出警告.
+     */
+    private void awaitWriteBehindDrained() {
+        long drainTimeoutMillis = getConfig().getLong("write-behind.shutdown-timeout-ms", 10000);
+        if (!writeBehindQueue.awaitDrained(drainTimeoutMillis)) {
+            getLogger().warning(languageManager.get("console.sync.drain_timeout", "count", String.valueOf(writeBehindQueue.pendingCount())));
+        }
+    }
+
     /**
      * 更新配置文件，将新版本插件的默认值添加进来，并保留用户的旧设置.
      */
@@ -196,13 +303,203 @@ public final class MultiSyncStats extends JavaPlugin {
         saveConfig();
     }
 
+    /**
+     * 根据 config.yml 中的 storage.type 创建存储后端: mysql (默认) 或 sqlite.
+     * @return 新的存储后端.
+     * @throws SQLException 如果连接或初始化失败.
+     */
+    private StatStorage createStorage() throws SQLException {
+        if ("sqlite".equalsIgnoreCase(getConfig().getString("storage.type", "mysql"))) {
+            return new SqliteStorage(this);
+        }
+        return new DatabaseManager(this);
+    }
+
+    /**
+     * 根据 config.yml 中的 cache 部分创建占位符读取缓存.
+     * @return 新的缓存实例.
+     */
+    private StatCache createStatCache() {
+        return new StatCache(
+                getLogger(),
+                (uuid, placeholderName) -> {
+                    long start = System.nanoTime();
+                    try {
+                        return storage.getSyncedRow(uuid, placeholderName);
+                    } finally {
+                        metrics.dbRead().recordSince(start);
+                    }
+                },
+                (uuid, placeholderNames) -> {
+                    long start = System.nanoTime();
+                    try {
+                        return storage.getAllSyncedRows(uuid, placeholderNames);
+                    } finally {
+                        metrics.dbRead().recordSince(start);
+                    }
+                },
+                getConfig().getLong("cache.ttl-seconds", 30),
+                getConfig().getInt("cache.max-entries", 10000),
+                getConfig().getInt("cache.refresh-threads", 2),
+                getConfig().getString("cache.loading-value", "0")
+        );
+    }
+
+    /**
+     * 登记队列深度、缓存和连接池等指标. 读取函数通过字段访问组件, 重载后自动使用新的实例.
+     */
+    private void registerMetrics() {
+        metrics.registerGauge("write_queue_pending", "Values waiting in the write-behind queue.", () -> writeBehindQueue.pendingCount());
+        metrics.registerCounter("write_queue_submitted_total", "Values submitted to the write-behind queue.", () -> writeBehindQueue.getSubmittedCount());
+        metrics.registerCounter("write_queue_merged_total", "Queued values replaced by a newer value.", () -> writeBehindQueue.getMergedCount());
+        metrics.registerCounter("write_queue_dropped_total", "Values dropped because the queue was full.", () -> writeBehindQueue.getDroppedCount());
+        metrics.registerCounter("write_queue_written_total", "Values written to the database.", () -> writeBehindQueue.getWrittenCount());
+        metrics.registerCounter("write_queue_failed_batches_total", "Batches that failed to write.", () -> writeBehindQueue.getFailedBatchCount());
+        metrics.registerCounter("sync_players_resolved_total", "Players queued by event-driven sync.",
+                () -> dirtyPlayerTracker != null ? dirtyPlayerTracker.getSyncedCount() : 0);
+        metrics.registerCounter("sync_players_skipped_total", "Idle players skipped by event-driven sync.",
+                () -> dirtyPlayerTracker != null ? dirtyPlayerTracker.getSkippedCount() : 0);
+        metrics.registerGauge("cache_entries", "Entries in the placeholder cache.", () -> statCache.size());
+        metrics.registerCounter("cache_hits_total", "Placeholder reads served with a cached value.", () -> statCache.getHitCount());
+        metrics.registerCounter("cache_misses_total", "Placeholder reads that returned the loading value.", () -> statCache.getMissCount());
+        metrics.registerGauge("cache_pending_refreshes", "Cache refreshes waiting for a thread.", () -> statCache.getPendingRefreshCount());
+        metrics.registerGauge("db_pool_active", "Active database connections.", () -> poolStat(PoolStats::active));
+        metrics.registerGauge("db_pool_idle", "Idle database connections.", () -> poolStat(PoolStats::idle));
+        metrics.registerGauge("db_pool_total", "Total database connections.", () -> poolStat(PoolStats::total));
+        metrics.registerGauge("db_pool_waiting", "Threads waiting for a database connection.", () -> poolStat(PoolStats::waiting));
+        metrics.registerGauge("db_read_pool_active", "Active read pool connections.", () -> readPoolStat(PoolStats::active));
+        metrics.registerGauge("db_read_pool_idle", "Idle read pool connections.", () -> readPoolStat(PoolStats::idle));
+        metrics.registerGauge("db_read_pool_total", "Total read pool connections.", () -> readPoolStat(PoolStats::total));
+        metrics.registerGauge("db_read_pool_waiting", "Threads waiting for a read pool connection.", () -> readPoolStat(PoolStats::waiting));
+        metrics.registerGauge("db_read_fallback", "1 while reads use the primary because the read pool is unavailable.",
+                () -> storage.isReadFallbackActive() ? 1 : 0);
+    }
+
+    private double poolStat(ToIntFunction<PoolStats> field) {
+        PoolStats stats = storage.getPoolStats();
+        return stats != null ? field.applyAsInt(stats) : 0;
+    }
+
+    private double readPoolStat(ToIntFunction<PoolStats> field) {
+        PoolStats stats = storage.getReadPoolStats();
+        return stats != null ? field.applyAsInt(stats) : 0;
+    }
+
+    /**
+     * 根据 config.yml 中的 metrics 部分创建指标文件输出器.
+     * @return 新的输出器; 未设置文件路径时返回 null.
+     */
+    private PrometheusFileDumper createMetricsDumper() {
+        String file = getConfig().getString("metrics.prometheus-file", "");
+        if (file == null || file.isBlank()) {
+            return null;
+        }
+        File target = new File(file);
+        if (!target.isAbsolute()) {
+            target = new File(getDataFolder(), file);
+        }
+        return new PrometheusFileDumper(getLogger(), metrics, target.toPath(), getConfig().getLong("metrics.dump-interval-seconds", 15));
+    }
+
+    /**
+     * 根据 config.yml 中的 change-feed 部分创建变更记录读取器.
+     * @return 新的读取器; 未启用时返回 null.
+     */
+    private ChangeFeedPoller createChangeFeedPoller() {
+        if (!getConfig().getBoolean("change-feed.enabled", true)) {
+            return null;
+        }
+        return new ChangeFeedPoller(
+                getLogger(),
+                storage,
+                serverName,
+                // 通过字段访问缓存, 重载后自动使用新的缓存
+                (uuid, placeholderName) -> statCache.refreshIfCached(uuid, placeholderName),
+                getConfig().getLong("change-feed.poll-interval-ms", 2000),
+                getConfig().getLong("change-feed.settle-seconds", 10),
+                getConfig().getLong("change-feed.retention-hours", 24) * 3600L
+        );
+    }
+
+    /**
+     * 根据 config.yml 中的 write-behind 部分创建写入队列.
+     * @return 新的写入队列.
+     */
+    private WriteBehindQueue createWriteBehindQueue() {
+        return new WriteBehindQueue(
+                getLogger(),
+                this::writeSyncedUpdates,
+                getConfig().getInt("write-behind.capacity", 50000),
+                getConfig().getInt("write-behind.workers", 2),
+                getConfig().getBoolean("write-behind.virtual-threads", false),
+                getConfig().getInt("write-behind.batch-size", 1000),
+                getConfig().getLong("write-behind.offer-timeout-ms", 500)
+        );
+    }
+
+    /**
+     * 根据 config.yml 中的 leaderboards 部分创建排行榜管理器.
+     * 每个统计的刷新周期可以在 leaderboards.stats.<统计>.refresh-seconds 中单独设置.
+     * @return 新的排行榜管理器.
+     */
+    private LeaderboardManager createLeaderboardManager() {
+        long defaultRefreshSeconds = getConfig().getLong("leaderboards.refresh-seconds", 60);
+        return new LeaderboardManager(
+                getLogger(),
+                storage,
+                getConfig().getInt("leaderboards.size", 10),
+                placeholderName -> getConfig().getLong("leaderboards.stats." + placeholderName + ".refresh-seconds", defaultRefreshSeconds)
+        );
+    }
+
+    /**
+     * 立即解析一个玩家的所有占位符并放入写入队列. 必须在可以安全访问该玩家的线程上调用 (例如玩家退出事件).
+     * 本周期已经解析的该玩家的旧值会被丢弃, 不会在这次写入之后覆盖新值.
+     * @param player 玩家.
+     */
+    public void flushPlayer(Player player) {
+        PlaceholderRegistry registry = getPlaceholderRegistry();
+        if (syncScheduler == null || registry.isEmpty()) {
+            return;
+        }
+        syncScheduler.discardPlayer(player.getUniqueId());
+        List<StatUpdate> changed = writtenValueTracker.filterChanged(syncScheduler.resolvePlayer(player, registry.descriptors()));
+        if (!changed.isEmpty()) {
+            writeBehindQueue.offer(changed);
+        }
+    }
+
+    /**
+     * 在当前线程解析所有在线玩家的所有占位符, 只返回有变化的值. 用于插件关闭时的最后一次同步.
+     * 插件关闭时在主线程调用; Folia 上此时区域线程已经停止, 同样直接在当前线程解析.
+     */
+    private List<StatUpdate> resolveOnlinePlayers() {
+        PlaceholderRegistry registry = getPlaceholderRegistry();
+        List<StatUpdate> resolved = new ArrayList<>();
+        if (registry.isEmpty()) {
+            return resolved;
+        }
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            resolved.addAll(syncScheduler.resolvePlayer(player, registry.descriptors()));
+        }
+        return writtenValueTracker.filterChanged(resolved);
+    }
+
+    /**
+     * 在后台预取某个玩家所有同步统计的总和, 使其第一次渲染记分板时就能命中缓存.
+     * @param playerUUID 玩家UUID.
+     */
+    public void prefetchPlayer(UUID playerUUID) {
+        statCache.prefetch(playerUUID, getPlaceholderRegistry().names());
+    }
+
     /**
      * 从数据库同步加载需要同步的占位符列表.
      * 此方法现在不直接记录日志，以便在同步任务中安静地调用.
      */
     public void reloadPlaceholdersFromDB() {
-        // 在插件主线程或异步任务中运行数据库查询.
-        this.syncedPlaceholders = databaseManager.getSyncedPlaceholders();
+        // 在插件主线程或异步任务中运行数据库查询. 注册表由存储后端整体替换, 读取方无需同步.
+        storage.loadPlaceholders();
     }
 
     /**
@@ -210,88 +507,68 @@ public final class MultiSyncStats extends JavaPlugin {
      */
     private void startSyncTask() {
         // 如果有旧任务，先取消
-        if (syncTask != null) {
-            if (syncTask instanceof BukkitTask) {
-                ((BukkitTask) syncTask).cancel();
-            } else if (syncTask instanceof ScheduledTask) {
-                ((ScheduledTask) syncTask).cancel();
-            }
+        if (syncScheduler != null) {
+            writeBehindQueue.offer(syncScheduler.stop());
         }
-        // 从配置中读取同步周期 (单位: 秒)
+        // 从配置中读取同步周期 (单位: 秒) 和每 tick 的解析时间预算 (单位: 毫秒)
         long syncIntervalSeconds = getConfig().getLong("sync-interval-seconds", 300);
+        double tickBudgetMillis = getConfig().getDouble("sync-tick-budget-ms", 2.0);
+
+        // 单个占位符的解析耗时预算 (单位: 微秒), 超出后只在每 N 个周期中解析一次
+        PlaceholderProfiler profiler = new PlaceholderProfiler(
+                getConfig().getLong("slow-placeholders.budget-micros", 2000),
+                getConfig().getInt("slow-placeholders.cycle-divisor", 4));
+
+        // 自适应同步: 周期按最短间隔运行, 每个占位符从 sync-interval-seconds 开始, 按值的变化频率在最短和最长间隔之间调整
+        SyncCadence cadence = null;
+        if (getConfig().getBoolean("adaptive-sync.enabled", false)) {
+            long minSeconds = Math.max(1, getConfig().getLong("adaptive-sync.min-interval-seconds", 60));
+            long maxSeconds = Math.max(minSeconds, getConfig().getLong("adaptive-sync.max-interval-seconds", 1800));
+            cadence = new SyncCadence(1, (int) (maxSeconds / minSeconds), (int) Math.round((double) syncIntervalSeconds / minSeconds));
+            syncIntervalSeconds = minSeconds;
+        }
 
-        Runnable syncLogic = () -> {
-                // 在每个同步周期开始时，重新从数据库加载占位符列表
-                reloadPlaceholdersFromDB();
-                
-                if (syncedPlaceholders.isEmpty() || Bukkit.getOnlinePlayers().isEmpty()) {
-                    return;
-                }
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    for (String placeholderNameWithPct : syncedPlaceholders) {
-                        String placeholderName = placeholderNameWithPct.replace("%", "");
-                        getValueFromPAPI(player, placeholderNameWithPct).thenAcceptAsync(value -> {
-                            if (value != null) {
-                                databaseManager.updateLocalStat(player.getUniqueId(), player.getName(), placeholderName, value);
-                            }
-                    });
-                }
-            }
-        };
-        
-        if (isPaperOrFolia) {
-            // Paper/Folia: 使用现代异步调度器
-            this.syncTask = getServer().getAsyncScheduler().runAtFixedRate(this, (task) -> syncLogic.run(), 60L, syncIntervalSeconds, TimeUnit.SECONDS);
-        } else {
-            // Spigot/Other: 使用旧版 Bukkit 调度器
-            long intervalTicks = syncIntervalSeconds * 20L;
-            this.syncTask = new BukkitRunnable() {
-                @Override
-                public void run() {
-                    syncLogic.run();
-            }
-            }.runTaskTimerAsynchronously(this, 60 * 20L, intervalTicks);
+        // 事件驱动同步: 只解析有过活动的玩家; 空闲玩家每隔 idle-sync-seconds 仍同步一次, 以捕获不触发事件的统计
+        DirtyPlayerTracker dirtyPlayers = null;
+        if (getConfig().getBoolean("event-driven-sync.enabled", false)) {
+            long idleSeconds = Math.max(0, getConfig().getLong("event-driven-sync.idle-sync-seconds", 900));
+            dirtyPlayers = new DirtyPlayerTracker((int) ((idleSeconds + syncIntervalSeconds - 1) / syncIntervalSeconds));
         }
+        this.dirtyPlayerTracker = dirtyPlayers;
+
+        this.syncScheduler = new SyncScheduler(this, updates -> writeBehindQueue.submit(updates), syncIntervalSeconds, tickBudgetMillis, profiler,
+                cadence, dirtyPlayers);
+        this.syncScheduler.start();
     }
 
     /**
-     * 在主线程安全地获取 PlaceholderAPI 的值.
-     * @param player 玩家.
-     * @param fullPlaceholder 完整的占位符 (例如, "%player_kills%").
-     * @return 一个 CompletableFuture，包含占位符的值，如果解析失败则为 null.
+     * 写入一批同步数据 (在写入队列的线程调用).
+     * @param updates 写入队列取出的一批数据.
+     * @return 写入成功或没有需要写入的数据时返回 true.
      */
-    private CompletableFuture<String> getValueFromPAPI(Player player, String fullPlaceholder) {
-        CompletableFuture<String> future = new CompletableFuture<>();
-
-        Runnable getPapiValue = () -> {
-                try {
-                    String value = PlaceholderAPI.setPlaceholders(player, fullPlaceholder);
-                    if (value.equals(fullPlaceholder)) {
-                    getLogger().warning(languageManager.get("console.papi.parse_fail", "placeholder", fullPlaceholder, "player_name", player.getName()));
-                    future.complete(null);
-                } else {
-                    future.complete(value);
-            }
-            } catch (Exception e) {
-                getLogger().warning(languageManager.get("console.papi.parse_error", "placeholder", fullPlaceholder));
-                future.complete(null);
+    private boolean writeSyncedUpdates(List<StatUpdate> updates) {
+        // 只写入自上次成功写入以来发生变化的值
+        List<StatUpdate> changed = writtenValueTracker.filterChanged(updates);
+        if (changed.isEmpty()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean written = storage.updateLocalStats(changed);
+        metrics.dbWrite().recordSince(start);
+        if (!written) {
+            return false;
+        }
+        // 以增量方式更新名次索引; 本次启动后第一次写入时不知道旧值, 等待下一次完整重建
+        for (StatUpdate update : changed) {
+            BigDecimal previous = writtenValueTracker.getLastWritten(update.playerUUID(), update.placeholderName());
+            if (previous != null) {
+                rankManager.applyDelta(update.placeholderName(), update.playerUUID(), update.value().subtract(previous).doubleValue());
             }
-        };
-
-        if (isPaperOrFolia) {
-            // Paper/Folia: 使用玩家调度器，确保在正确的线程上运行
-            player.getScheduler().run(this, (task) -> getPapiValue.run(), null);
-        } else {
-            // Spigot/Other: 回退到在主服务器线程上运行
-            new BukkitRunnable() {
-                @Override
-                public void run() {
-                    getPapiValue.run();
-                }
-            }.runTask(this);
         }
-
-        return future;
+        writtenValueTracker.recordWritten(changed);
+        // 本服务器的数据已变化, 让缓存在下次读取时刷新总和
+        changed.forEach(update -> statCache.markStale(update.playerUUID(), update.placeholderName()));
+        return true;
     }
 
     /**
@@ -308,26 +585,72 @@ public final class MultiSyncStats extends JavaPlugin {
             getLogger().severe(languageManager.get("console.config.invalid_server_name", "server_name", serverName));
             return false;
         }
+        // 服务器名会成为宽表中的列名, 不能与插件自身的列重名
+        if (serverName.equalsIgnoreCase("player_uuid") || serverName.equalsIgnoreCase("player_name")
+                || serverName.equalsIgnoreCase(DatabaseManager.TOTAL_COLUMN)) {
+            getLogger().severe(languageManager.get("console.config.reserved_server_name", "server_name", serverName));
+            return false;
+        }
 
         // ... 可以在这里添加更多配置验证 ...
 
         return true;
     }
 
-    public DatabaseManager getDatabaseManager() {
-        return databaseManager;
+    public StatStorage getStorage() {
+        return storage;
     }
 
     public String getServerName() {
         return serverName;
     }
 
+    @Override
+    public StatCache getStatCache() {
+        return statCache;
+    }
+
+    @Override
+    public LeaderboardManager getLeaderboardManager() {
+        return leaderboardManager;
+    }
+
+    @Override
+    public RankManager getRankManager() {
+        return rankManager;
+    }
+
+    public PluginMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SyncScheduler getSyncScheduler() {
+        return syncScheduler;
+    }
+
+    /**
+     * 事件驱动同步的活跃玩家记录; 未启用时返回 null.
+     */
+    public DirtyPlayerTracker getDirtyPlayerTracker() {
+        return dirtyPlayerTracker;
+    }
+
+    public WriteBehindQueue getWriteBehindQueue() {
+        return writeBehindQueue;
+    }
+
+    public WrittenValueTracker getWrittenValueTracker() {
+        return writtenValueTracker;
+    }
+
     public LanguageManager getLanguageManager() {
         return languageManager;
     }
     
-    public Set<String> getSyncedPlaceholders() {
-        return syncedPlaceholders;
+    @Override
+    public PlaceholderRegistry getPlaceholderRegistry() {
+        // 存储后端初始化失败时插件会被禁用, 但玩家退出事件等仍可能在此之前调用
+        return storage != null ? storage.getPlaceholders() : PlaceholderRegistry.EMPTY;
     }
 
     public boolean isPaperOrFolia() {
@@ -0,0 +1,119 @@
+package com.myname.multisyncstats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 需要同步的占位符的不可变注册表, 以不带百分号的名称为键.
+ * 重新加载时创建新的注册表并整体替换 (写时复制), 读取方无需加锁, 也不会看到加载到一半的列表.
+ */
+public final class PlaceholderRegistry {
+
+    public static final PlaceholderRegistry EMPTY = new PlaceholderRegistry(List.of());
+
+    private final Map<String, StatDescriptor> byName;
+    private final List<StatDescriptor> descriptors;
+    private final List<String> names;
+    private final List<String> placeholders;
+
+    /**
+     * @param descriptors 所有统计的描述.
+     */
+    public PlaceholderRegistry(Collection<StatDescriptor> descriptors) {
+        Map<String, StatDescriptor> byName = new HashMap<>();
+        List<String> names = new ArrayList<>(descriptors.size());
+        List<String> placeholders = new ArrayList<>(descriptors.size());
+        for (StatDescriptor descriptor : descriptors) {
+            byName.put(descriptor.name(), descriptor);
+            names.add(descriptor.name());
+            placeholders.add(descriptor.placeholder());
+        }
+        this.byName = Map.copyOf(byName);
+        this.descriptors = List.copyOf(descriptors);
+        this.names = List.copyOf(names);
+        this.placeholders = List.copyOf(placeholders);
+    }
+
+    /**
+     * 获取一个统计的描述.
+     * @param name 占位符名称 (不带百分号).
+     * @return 描述; 未注册时返回 null.
+     */
+    public StatDescriptor get(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * 某个统计是否已注册.
+     * @param name 占位符名称 (不带百分号).
+     */
+    public boolean contains(String name) {
+        return byName.containsKey(name);
+    }
+
+    /**
+     * 所有统计的描述.
+     */
+    public List<StatDescriptor> descriptors() {
+        return descriptors;
+    }
+
+    /**
+     * 所有占位符名称 (不带百分号).
+     */
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * 所有完整的占位符 (带百分号).
+     */
+    public List<String> placeholders() {
+        return placeholders;
+    }
+
+    public int size() {
+        return descriptors.size();
+    }
+
+    public boolean isEmpty() {
+        return descriptors.isEmpty();
+    }
+
+    /**
+     * 为新加载的一行创建描述. 当前注册表中已有相同定义的统计时沿用原来的描述, 不重新生成 SQL.
+     * @param id          mss_synced_placeholders.id.
+     * @param placeholder 数据库中保存的占位符 (带百分号).
+     * @param type        数值类型.
+     * @return 描述.
+     */
+    public StatDescriptor describe(int id, String placeholder, StatType type) {
+        String name = placeholder.replace("%", "");
+        StatDescriptor existing = byName.get(name);
+        return existing != null && existing.sameDefinition(id, type) ? existing : new StatDescriptor(id, name, type);
+    }
+
+    /**
+     * 由新加载的描述创建注册表.
+     * @param loaded 新加载的所有描述 (通过 {@link #describe} 创建).
+     * @return 新的注册表; 与当前注册表完全相同时返回当前注册表.
+     */
+    public PlaceholderRegistry replaceWith(List<StatDescriptor> loaded) {
+        if (loaded.size() == descriptors.size()) {
+            boolean same = true;
+            for (StatDescriptor descriptor : loaded) {
+                if (byName.get(descriptor.name()) != descriptor) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return this;
+            }
+        }
+        return new PlaceholderRegistry(loaded);
+    }
+}
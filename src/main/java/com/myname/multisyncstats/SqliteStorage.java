@@ -0,0 +1,555 @@
+package com.myname.multisyncstats;
+
+import com.myname.multisyncstats.leaderboard.LeaderboardEntry;
+import com.myname.multisyncstats.metrics.PoolStats;
+import com.myname.multisyncstats.sync.ChangeEntry;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 嵌入式 SQLite 存储后端. 同一台主机上的多个服务器可以通过同一个数据库文件共享统计数据, 读取不经过网络.
+ * - 使用 WAL 日志模式: 读取不会被写入阻塞, 多个进程可以同时读取; 写入由 SQLite 串行化, 等待锁的时间由 busy-timeout-ms 决定.
+ * - 只使用 normalized 布局 (mss_stat_values 与预先维护总和的 mss_stat_totals), 没有需要迁移的旧表.
+ * - 写入事务以 IMMEDIATE 模式开始, 一开始就取得写锁, 避免事务中途升级锁时因其他进程正在写入而失败.
+ * - 数值以 SQLite 的 NUMERIC 类型保存: 整数统计是精确的, 小数统计以双精度浮点数保存.
+ * 驱动 (org.xerial:sqlite-jdbc) 由服务端自带, 插件不需要打包. 启动时检查驱动是否存在以及 SQLite 版本, 不满足时给出明确的错误.
+ */
+public class SqliteStorage implements StatStorage {
+
+    static final String DRIVER_CLASS = "org.sqlite.JDBC";
+    // 写入使用 INSERT ... ON CONFLICT DO UPDATE, 需要 SQLite 3.24.0 及以上
+    static final int[] MIN_VERSION = {3, 24, 0};
+    /**
+     * 找不到驱动时抛出的 SQLException 的 SQLState.
+     */
+    public static final String DRIVER_MISSING_STATE = "MSS01";
+    /**
+     * SQLite 版本过低时抛出的 SQLException 的 SQLState.
+     */
+    public static final String VERSION_TOO_OLD_STATE = "MSS02";
+
+    private final Logger logger;
+    private final Supplier<String> serverName;
+    private final HikariDataSource dataSource;
+    // 写入时是否同时追加到 mss_changes, 供其他服务器增量发现变化
+    private final boolean changeFeedEnabled;
+    // 需要同步的统计, 重新加载时整体替换
+    private volatile PlaceholderRegistry registry = PlaceholderRegistry.EMPTY;
+
+    /**
+     * 根据 config.yml 中的 storage.sqlite 部分打开数据库文件并初始化表结构.
+     * @param plugin 插件主类实例.
+     * @throws SQLException 如果打开或初始化失败.
+     */
+    public SqliteStorage(MultiSyncStats plugin) throws SQLException {
+        this(plugin.getLogger(), plugin.getConfig(), plugin::getServerName, createDataSource(
+                // 相对路径相对于插件目录; 多个服务器共享数据时应使用同一个绝对路径
+                plugin.getDataFolder().toPath().resolve(plugin.getConfig().getString("storage.sqlite.file", "stats.db")),
+                plugin.getConfig().getInt("storage.sqlite.pool-size", 4),
+                plugin.getConfig().getLong("storage.sqlite.busy-timeout-ms", 5000)));
+    }
+
+    /**
+     * 使用给定的连接池初始化表结构. 不依赖服务器环境.
+     * @param logger     日志.
+     * @param config     插件配置 (读取 change-feed 部分).
+     * @param serverName 返回本服务器名的函数 (重载后可能变化).
+     * @param dataSource 由 {@link #createDataSource} 创建的连接池. 初始化失败时会被关闭.
+     * @throws SQLException 如果初始化失败.
+     */
+    public SqliteStorage(Logger logger, ConfigurationSection config, Supplier<String> serverName, HikariDataSource dataSource) throws SQLException {
+        this.logger = logger;
+        this.serverName = serverName;
+        this.dataSource = dataSource;
+        this.changeFeedEnabled = config.getBoolean("change-feed.enabled", true);
+
+        try {
+            checkVersion();
+            initializeTables();
+        } catch (SQLException e) {
+            // 不在此处记录日志. 直接将异常抛出，由主类统一处理.
+            dataSource.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 创建 SQLite 数据库文件的连接池.
+     * @param file              数据库文件. 不存在时自动创建 (包括上级目录).
+     * @param poolSize          连接池大小. 读取可以并行, 写入由 SQLite 串行化.
+     * @param busyTimeoutMillis 等待其他连接 (或其他进程) 释放写锁的最长时间 (毫秒).
+     * @return 连接池.
+     * @throws SQLException 如果找不到驱动或无法创建上级目录.
+     */
+    public static HikariDataSource createDataSource(Path file, int poolSize, long busyTimeoutMillis) throws SQLException {
+        try {
+            Class.forName(DRIVER_CLASS);
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("找不到 SQLite 驱动 " + DRIVER_CLASS + ", 服务端没有自带 sqlite-jdbc", DRIVER_MISSING_STATE, e);
+        }
+        Path absolute = file.toAbsolutePath();
+        try {
+            if (absolute.getParent() != null) {
+                Files.createDirectories(absolute.getParent());
+            }
+        } catch (IOException e) {
+            throw new SQLException("无法创建数据库文件所在的目录: " + absolute.getParent(), e);
+        }
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("MultiSyncStats-SQLite");
+        dataSource.setDriverClassName("org.sqlite.JDBC");
+        dataSource.setJdbcUrl("jdbc:sqlite:" + absolute);
+        dataSource.setMaximumPoolSize(Math.max(1, poolSize));
+        // 以下属性由驱动在每个新连接上以 PRAGMA 的形式设置
+        dataSource.addDataSourceProperty("journal_mode", "WAL");
+        // WAL 模式下 NORMAL 不会损坏数据库, 只可能在断电时丢失最后提交的事务
+        dataSource.addDataSourceProperty("synchronous", "NORMAL");
+        dataSource.addDataSourceProperty("busy_timeout", String.valueOf(Math.max(0, busyTimeoutMillis)));
+        dataSource.addDataSourceProperty("transaction_mode", "IMMEDIATE");
+        return dataSource;
+    }
+
+    /**
+     * 检查 SQLite 的版本. 满足最低版本的驱动 (2018 年之后) 也支持 transaction_mode 属性.
+     * @throws SQLException 如果版本过低.
+     */
+    private void checkVersion() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            String version = conn.getMetaData().getDatabaseProductVersion();
+            if (!isSupportedVersion(version)) {
+                throw new SQLException("SQLite 版本 " + version + " 过低, 至少需要 " + minVersion(), VERSION_TOO_OLD_STATE);
+            }
+        }
+    }
+
+    /**
+     * 版本号是否不低于 {@link #MIN_VERSION}. 无法解析的部分视为 0.
+     * @param version 形如 "3.46.1" 的版本号.
+     */
+    static boolean isSupportedVersion(String version) {
+        String[] parts = version == null ? new String[0] : version.trim().split("\\.");
+        for (int i = 0; i < MIN_VERSION.length; i++) {
+            int part = 0;
+            if (i < parts.length) {
+                try {
+                    part = Integer.parseInt(parts[i]);
+                } catch (NumberFormatException ignored) {
+                    // 视为 0
+                }
+            }
+            if (part != MIN_VERSION[i]) {
+                return part > MIN_VERSION[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 最低支持的 SQLite 版本号.
+     */
+    public static String minVersion() {
+        return MIN_VERSION[0] + "." + MIN_VERSION[1] + "." + MIN_VERSION[2];
+    }
+
+    /**
+     * 初始化插件所需的数据表.
+     * @throws SQLException SQL异常.
+     */
+    private void initializeTables() throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS mss_synced_placeholders (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "placeholder_name TEXT NOT NULL UNIQUE," +
+                    "value_type TEXT NOT NULL DEFAULT 'INTEGER'" +
+                    ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS mss_stat_values (" +
+                    "player_uuid TEXT NOT NULL," +
+                    "stat_id INTEGER NOT NULL," +
+                    "server_id TEXT NOT NULL," +
+                    "player_name TEXT NOT NULL," +
+                    "value NUMERIC NOT NULL DEFAULT 0," +
+                    "PRIMARY KEY (player_uuid, stat_id, server_id)" +
+                    ") WITHOUT ROWID");
+            // 每个 (玩家, 统计) 的预先维护的总和, 读取时只需一次主键查询
+            stmt.execute("CREATE TABLE IF NOT EXISTS mss_stat_totals (" +
+                    "player_uuid TEXT NOT NULL," +
+                    "stat_id INTEGER NOT NULL," +
+                    "player_name TEXT NOT NULL," +
+                    "total NUMERIC NOT NULL DEFAULT 0," +
+                    "PRIMARY KEY (player_uuid, stat_id)" +
+                    ") WITHOUT ROWID");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_stat_total ON mss_stat_totals (stat_id, total)");
+            // 只追加的变更记录. changed_at 为毫秒时间戳: 共享文件的服务器都在同一台主机上, 时钟一致
+            stmt.execute("CREATE TABLE IF NOT EXISTS mss_changes (" +
+                    "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "player_uuid TEXT NOT NULL," +
+                    "placeholder_name TEXT NOT NULL," +
+                    "server_id TEXT NOT NULL," +
+                    "changed_at INTEGER NOT NULL" +
+                    ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_changed_at ON mss_changes (changed_at)");
+        }
+    }
+
+    @Override
+    public StorageLayout getLayout() {
+        return StorageLayout.NORMALIZED;
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        HikariPoolMXBean pool = dataSource.isClosed() ? null : dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return null;
+        }
+        return new PoolStats(pool.getActiveConnections(), pool.getIdleConnections(), pool.getTotalConnections(), pool.getThreadsAwaitingConnection());
+    }
+
+    /**
+     * 嵌入式数据库只有一个连接池.
+     */
+    @Override
+    public PoolStats getReadPoolStats() {
+        return null;
+    }
+
+    @Override
+    public boolean isReadFallbackActive() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
+        }
+    }
+
+    @Override
+    public boolean addPlaceholder(String placeholderName, StatType type) {
+        String sql = "INSERT OR IGNORE INTO mss_synced_placeholders (placeholder_name, value_type) VALUES (?, ?)";
+        try (Connection conn = dataSource.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, placeholderName);
+            stmt.setString(2, type.name());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "添加占位符 " + placeholderName + " 失败.", e);
+            return false;
+        }
+        loadPlaceholders();
+        return true;
+    }
+
+    @Override
+    public boolean removePlaceholder(String placeholderName) {
+        // 为了数据安全，不删除 mss_stat_values 中的数据
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM mss_synced_placeholders WHERE placeholder_name = ?")) {
+            stmt.setString(1, placeholderName);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "移除占位符 " + placeholderName + " 失败.", e);
+            return false;
+        }
+        loadPlaceholders();
+        return true;
+    }
+
+    @Override
+    public PlaceholderRegistry loadPlaceholders() {
+        PlaceholderRegistry current = registry;
+        List<StatDescriptor> loaded = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, placeholder_name, value_type FROM mss_synced_placeholders")) {
+            while (rs.next()) {
+                loaded.add(current.describe(rs.getInt("id"), rs.getString("placeholder_name"), StatType.fromStoredName(rs.getString("value_type"))));
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "从数据库获取同步占位符列表失败.", e);
+            return current;
+        }
+        registry = current.replaceWith(loaded);
+        return registry;
+    }
+
+    @Override
+    public PlaceholderRegistry getPlaceholders() {
+        return registry;
+    }
+
+    @Override
+    public StatRow getSyncedRow(UUID playerUUID, String placeholderName) {
+        StatDescriptor stat = registry.get(placeholderName);
+        if (stat == null) {
+            return StatRow.empty();
+        }
+        // 主键前缀查询取回所有服务器的值, 总和在内存中计算
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT server_id, value FROM mss_stat_values WHERE player_uuid = ? AND stat_id = ?")) {
+            stmt.setString(1, playerUUID.toString());
+            stmt.setInt(2, stat.id());
+            Map<String, BigDecimal> values = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    values.put(rs.getString("server_id"), rs.getBigDecimal("value"));
+                }
+            }
+            return values.isEmpty() ? StatRow.empty() : StatRow.of(stat.type(), null, values);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "获取同步数据失败 for " + placeholderName, e);
+            return null;
+        }
+    }
+
+    @Override
+    public Map<String, StatRow> getAllSyncedRows(UUID playerUUID, Collection<String> placeholderNames) {
+        PlaceholderRegistry stats = registry;
+        Map<Integer, StatDescriptor> requested = new HashMap<>();
+        for (String placeholderName : placeholderNames) {
+            StatDescriptor stat = stats.get(placeholderName);
+            if (stat != null) {
+                requested.put(stat.id(), stat);
+            }
+        }
+        Map<StatDescriptor, Map<String, BigDecimal>> values = new HashMap<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT stat_id, server_id, value FROM mss_stat_values WHERE player_uuid = ?")) {
+            stmt.setString(1, playerUUID.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    StatDescriptor stat = requested.get(rs.getInt("stat_id"));
+                    if (stat != null) {
+                        values.computeIfAbsent(stat, k -> new HashMap<>()).put(rs.getString("server_id"), rs.getBigDecimal("value"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "预取玩家 " + playerUUID + " 的同步数据失败", e);
+            return null;
+        }
+        Map<String, StatRow> rows = new HashMap<>();
+        for (String placeholderName : placeholderNames) {
+            StatDescriptor stat = stats.get(placeholderName);
+            Map<String, BigDecimal> statValues = stat != null ? values.get(stat) : null;
+            rows.put(placeholderName, statValues != null ? StatRow.of(stat.type(), null, statValues) : StatRow.empty());
+        }
+        return rows;
+    }
+
+    @Override
+    public List<LeaderboardEntry> getTopEntries(String placeholderName, int limit) {
+        List<LeaderboardEntry> entries = new ArrayList<>(limit);
+        StatDescriptor stat = registry.get(placeholderName);
+        if (stat == null) {
+            return entries;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT player_uuid, player_name, total FROM mss_stat_totals WHERE stat_id = ? ORDER BY total DESC LIMIT ?")) {
+            stmt.setInt(1, stat.id());
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new LeaderboardEntry(UUID.fromString(rs.getString("player_uuid")), rs.getString("player_name"),
+                            stat.type().format(rs.getBigDecimal("total"))));
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "获取排行榜失败 for " + placeholderName, e);
+            return null;
+        }
+        return entries;
+    }
+
+    @Override
+    public Map<UUID, Double> getAllTotals(String placeholderName) {
+        Map<UUID, Double> totals = new HashMap<>();
+        StatDescriptor stat = registry.get(placeholderName);
+        if (stat == null) {
+            return totals;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT player_uuid, total FROM mss_stat_totals WHERE stat_id = ?")) {
+            stmt.setInt(1, stat.id());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.put(UUID.fromString(rs.getString("player_uuid")), rs.getDouble("total"));
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "获取所有玩家总和失败 for " + placeholderName, e);
+            return null;
+        }
+        return totals;
+    }
+
+    @Override
+    public boolean updateLocalStats(Collection<StatUpdate> updates) {
+        if (updates.isEmpty()) {
+            return true;
+        }
+        String serverName = this.serverName.get();
+        String valuesSQL = "INSERT INTO mss_stat_values (player_uuid, stat_id, server_id, player_name, value) VALUES (?, ?, ?, ?, ?) " +
+                "ON CONFLICT (player_uuid, stat_id, server_id) DO UPDATE SET player_name = excluded.player_name, value = excluded.value";
+        // 在同一个事务中重新计算受影响的 (玩家, 统计) 的总和
+        String totalsSQL = "INSERT INTO mss_stat_totals (player_uuid, stat_id, player_name, total) " +
+                "SELECT player_uuid, stat_id, ?, SUM(value) FROM mss_stat_values WHERE player_uuid = ? AND stat_id = ? GROUP BY player_uuid, stat_id " +
+                "ON CONFLICT (player_uuid, stat_id) DO UPDATE SET player_name = excluded.player_name, total = excluded.total";
+
+        PlaceholderRegistry stats = registry;
+        // 实际写入的数据, 变更记录只包含这些数据
+        List<StatUpdate> written = new ArrayList<>(updates.size());
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement valuesStmt = conn.prepareStatement(valuesSQL);
+                 PreparedStatement totalsStmt = conn.prepareStatement(totalsSQL)) {
+                for (StatUpdate update : updates) {
+                    // 已被移除的统计不再写入
+                    StatDescriptor stat = stats.get(update.placeholderName());
+                    if (stat == null) {
+                        continue;
+                    }
+                    written.add(update);
+                    int statId = stat.id();
+                    valuesStmt.setString(1, update.playerUUID().toString());
+                    valuesStmt.setInt(2, statId);
+                    valuesStmt.setString(3, serverName);
+                    valuesStmt.setString(4, update.playerName());
+                    valuesStmt.setBigDecimal(5, update.value());
+                    valuesStmt.addBatch();
+
+                    totalsStmt.setString(1, update.playerName());
+                    totalsStmt.setString(2, update.playerUUID().toString());
+                    totalsStmt.setInt(3, statId);
+                    totalsStmt.addBatch();
+                }
+                valuesStmt.executeBatch();
+                totalsStmt.executeBatch();
+                if (changeFeedEnabled && !written.isEmpty()) {
+                    writeChanges(conn, written, serverName);
+                }
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "批量更新本地统计数据失败 (" + updates.size() + " 条)", e);
+            return false;
+        }
+    }
+
+    /**
+     * 将一批数据的变更记录追加到 mss_changes. 调用方负责事务, 使变更记录与数据同时可见.
+     * @param conn       数据库连接.
+     * @param updates    已写入的数据.
+     * @param serverName 本服务器名.
+     * @throws SQLException SQL 异常.
+     */
+    private void writeChanges(Connection conn, Collection<StatUpdate> updates, String serverName) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO mss_changes (player_uuid, placeholder_name, server_id, changed_at) VALUES (?, ?, ?, ?)")) {
+            for (StatUpdate update : updates) {
+                stmt.setString(1, update.playerUUID().toString());
+                stmt.setString(2, update.placeholderName());
+                stmt.setString(3, serverName);
+                stmt.setLong(4, now);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    @Override
+    public long getLatestChangeSeq() {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT IFNULL(MAX(seq), 0) FROM mss_changes")) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "获取变更记录位置失败", e);
+            return -1L;
+        }
+    }
+
+    @Override
+    public List<ChangeEntry> getChangesSince(long afterSeq, int limit, long settleSeconds) {
+        String sql = "SELECT seq, player_uuid, placeholder_name, server_id, changed_at < ? AS settled " +
+                "FROM mss_changes WHERE seq > ? ORDER BY seq LIMIT ?";
+        List<ChangeEntry> changes = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, System.currentTimeMillis() - settleSeconds * 1000L);
+            stmt.setLong(2, afterSeq);
+            stmt.setInt(3, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new ChangeEntry(rs.getLong("seq"), UUID.fromString(rs.getString("player_uuid")),
+                            rs.getString("placeholder_name"), rs.getString("server_id"), rs.getBoolean("settled")));
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "读取变更记录失败", e);
+            return null;
+        }
+        return changes;
+    }
+
+    @Override
+    public int pruneChanges(long retentionSeconds, int limit) {
+        // SQLite 默认不支持 DELETE ... LIMIT, 通过主键子查询限制行数
+        String sql = "DELETE FROM mss_changes WHERE seq IN (SELECT seq FROM mss_changes WHERE changed_at < ? ORDER BY seq LIMIT ?)";
+        try (Connection conn = dataSource.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, System.currentTimeMillis() - retentionSeconds * 1000L);
+            stmt.setInt(2, limit);
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "清理变更记录失败", e);
+            return 0;
+        }
+    }
+
+    /**
+     * 嵌入式数据库没有旧版本的表结构.
+     * @return 始终返回 false.
+     */
+    @Override
+    public boolean migrateAllTables() {
+        return false;
+    }
+
+    /**
+     * 嵌入式数据库始终使用 normalized 布局, 没有需要迁移的数据.
+     */
+    @Override
+    public void migrateToNormalizedLayout() {
+    }
+}
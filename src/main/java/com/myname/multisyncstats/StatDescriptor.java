@@ -0,0 +1,116 @@
+package com.myname.multisyncstats;
+
+/**
+ * 一个同步统计的描述. 在加载占位符列表时创建一次, 热路径上只读取其中预先生成的字段, 不再拼接字符串或执行正则.
+ * 各 SQL 对应 MySQL 后端的 wide 布局 (每个统计一张表); 其他布局和后端只使用 id, 名称和类型.
+ */
+public final class StatDescriptor {
+
+    private final int id;
+    private final String name;
+    private final String placeholder;
+    private final StatType type;
+    private final String tableName;
+    private final String selectRowSql;
+    private final String selectTopSql;
+    private final String selectAllTotalsSql;
+    // 最近一次生成的写入语句. 服务器名只会在重载时改变, 因此几乎总是命中
+    private volatile UpsertSql upsertSql;
+
+    /**
+     * @param id   mss_synced_placeholders.id.
+     * @param name 占位符名称 (不带百分号), 例如 "player_kills".
+     * @param type 数值类型.
+     */
+    public StatDescriptor(int id, String name, StatType type) {
+        this.id = id;
+        this.name = name;
+        this.placeholder = "%" + name + "%";
+        this.type = type;
+        this.tableName = DatabaseManager.getTableName(name);
+        String total = DatabaseManager.TOTAL_COLUMN;
+        this.selectRowSql = String.format("SELECT * FROM `%s` WHERE player_uuid = ?", tableName);
+        this.selectTopSql = String.format("SELECT player_uuid, player_name, `%1$s` AS total FROM `%2$s` ORDER BY `%1$s` DESC LIMIT ?", total, tableName);
+        this.selectAllTotalsSql = String.format("SELECT player_uuid, `%s` AS total FROM `%s`", total, tableName);
+    }
+
+    /**
+     * mss_synced_placeholders.id.
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * 占位符名称 (不带百分号).
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 完整的占位符 (带百分号), 例如 "%player_kills%".
+     */
+    public String placeholder() {
+        return placeholder;
+    }
+
+    /**
+     * 数值类型.
+     */
+    public StatType type() {
+        return type;
+    }
+
+    /**
+     * wide 布局中的数据表名.
+     */
+    public String tableName() {
+        return tableName;
+    }
+
+    /**
+     * 读取一个玩家整行 (各服务器列和总和列) 的 SQL. 参数: player_uuid.
+     */
+    public String selectRowSql() {
+        return selectRowSql;
+    }
+
+    /**
+     * 读取总和最高的玩家的 SQL. 参数: limit.
+     */
+    public String selectTopSql() {
+        return selectTopSql;
+    }
+
+    /**
+     * 读取所有玩家总和的 SQL. 没有参数.
+     */
+    public String selectAllTotalsSql() {
+        return selectAllTotalsSql;
+    }
+
+    /**
+     * 写入本服务器列并维护总和列的 SQL.
+     * @param serverName 本服务器名 (列名).
+     * @return 参见 {@link DatabaseManager#buildWideUpsertSql}.
+     */
+    public String upsertSql(String serverName) {
+        UpsertSql cached = upsertSql;
+        if (cached == null || !cached.serverName().equals(serverName)) {
+            cached = new UpsertSql(serverName, DatabaseManager.buildWideUpsertSql(tableName, serverName));
+            upsertSql = cached;
+        }
+        return cached.sql();
+    }
+
+    /**
+     * 与另一个描述是否对应同一个统计的同一个定义.
+     */
+    boolean sameDefinition(int id, StatType type) {
+        return this.id == id && this.type == type;
+    }
+
+    private record UpsertSql(String serverName, String sql) {
+    }
+}
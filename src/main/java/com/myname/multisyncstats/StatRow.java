@@ -0,0 +1,106 @@
+package com.myname.multisyncstats;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 某个玩家某个统计在各服务器上的值. 由存储后端在后台线程一次读取整行后创建, 缓存后供所有占位符变体共用.
+ * 所有聚合值 (总和, 最大值, 平均值, 各服务器的值) 在创建时计算并格式化, 渲染占位符时只读取字段.
+ */
+public final class StatRow {
+
+    // 平均值保留的小数位数
+    private static final int AVERAGE_SCALE = 2;
+
+    private final String total;
+    private final String max;
+    private final String average;
+    // 服务器名 -> 显示值. 服务器名 (列名) 在 MySQL 中不区分大小写, 这里也不区分
+    private final Map<String, String> servers;
+    // 没有该服务器的记录时返回的值
+    private final String missing;
+
+    private StatRow(String total, String max, String average, Map<String, String> servers, String missing) {
+        this.total = total;
+        this.max = max;
+        this.average = average;
+        this.servers = servers;
+        this.missing = missing;
+    }
+
+    /**
+     * 根据各服务器的值创建一行.
+     * @param type   数值类型.
+     * @param total  数据库中维护的总和; 为 null 时按各服务器的值求和.
+     * @param values 服务器名 -> 值. 值为 null 的服务器视为没有记录.
+     * @return 新的一行.
+     */
+    public static StatRow of(StatType type, BigDecimal total, Map<String, BigDecimal> values) {
+        BigDecimal sum = BigDecimal.ZERO;
+        BigDecimal max = null;
+        int count = 0;
+        Map<String, String> servers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, BigDecimal> entry : values.entrySet()) {
+            BigDecimal value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            sum = sum.add(value);
+            max = max == null || value.compareTo(max) > 0 ? value : max;
+            count++;
+            servers.put(entry.getKey(), type.format(value));
+        }
+        // 整数统计的平均值也保留小数, 否则 3 个服务器上的 1, 1, 2 会显示为 1
+        BigDecimal average = count == 0 ? BigDecimal.ZERO : sum.divide(BigDecimal.valueOf(count), AVERAGE_SCALE, RoundingMode.HALF_UP);
+        return new StatRow(type.format(total != null ? total : sum), type.format(max), StatType.DECIMAL.format(average),
+                Collections.unmodifiableMap(servers), "0");
+    }
+
+    /**
+     * 没有任何记录的玩家.
+     */
+    public static StatRow empty() {
+        return constant("0");
+    }
+
+    /**
+     * 所有变体都返回同一个值的一行, 用于首次加载完成前.
+     * @param value 返回的值.
+     */
+    public static StatRow constant(String value) {
+        return new StatRow(value, value, value, Map.of(), value);
+    }
+
+    /**
+     * 所有服务器的总和.
+     */
+    public String total() {
+        return total;
+    }
+
+    /**
+     * 各服务器中的最大值.
+     */
+    public String max() {
+        return max;
+    }
+
+    /**
+     * 有记录的服务器的平均值.
+     */
+    public String average() {
+        return average;
+    }
+
+    /**
+     * 某个服务器上的值.
+     * @param serverName 服务器名 (不区分大小写).
+     * @return 显示值; 该服务器没有记录时返回 "0".
+     */
+    public String server(String serverName) {
+        return servers.getOrDefault(serverName, missing);
+    }
+}
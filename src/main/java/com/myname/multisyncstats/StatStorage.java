@@ -0,0 +1,144 @@
+package com.myname.multisyncstats;
+
+import com.myname.multisyncstats.leaderboard.LeaderboardEntry;
+import com.myname.multisyncstats.metrics.PoolStats;
+import com.myname.multisyncstats.sync.ChangeEntry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 统计数据的存储后端. 由 storage.type 决定使用哪种实现:
+ * - mysql: {@link DatabaseManager}, 多台主机上的服务器共享一个 MySQL 数据库.
+ * - sqlite: {@link SqliteStorage}, 同一台主机上的服务器共享一个 WAL 模式的本地文件, 读取不经过网络.
+ * 除 close 外的所有方法都会访问数据库, 不要在服务器主线程或区域线程上调用.
+ */
+public interface StatStorage {
+
+    /**
+     * 当前使用的存储布局.
+     */
+    StorageLayout getLayout();
+
+    /**
+     * 添加一个新的占位符, 并重新加载注册表.
+     * @param placeholderName 占位符名称 (带百分号).
+     * @param type            数值类型.
+     * @return 如果添加成功或已存在，返回 true.
+     */
+    boolean addPlaceholder(String placeholderName, StatType type);
+
+    /**
+     * 移除一个占位符, 并重新加载注册表. 已有的数据会保留.
+     * @param placeholderName 占位符名称 (带百分号).
+     * @return 如果移除成功，返回 true.
+     */
+    boolean removePlaceholder(String placeholderName);
+
+    /**
+     * 从数据库重新加载需要同步的占位符, 并整体替换当前的注册表. 加载失败时保留原来的注册表.
+     * @return 当前的注册表.
+     */
+    PlaceholderRegistry loadPlaceholders();
+
+    /**
+     * 最近一次加载的占位符注册表. 只读取内存.
+     */
+    PlaceholderRegistry getPlaceholders();
+
+    /**
+     * 获取某个玩家某个统计在各服务器上的整行. 总和, 最大值, 平均值和单个服务器的值都由这一行计算.
+     * @param playerUUID      玩家UUID.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @return 整行; 没有数据或统计未注册时返回空行, 查询失败时返回 null.
+     */
+    StatRow getSyncedRow(UUID playerUUID, String placeholderName);
+
+    /**
+     * 一次性获取某个玩家多个统计的整行. 用于玩家加入时预取.
+     * @param playerUUID       玩家UUID.
+     * @param placeholderNames 占位符名称 (不带百分号).
+     * @return 占位符名称 -> 整行. 没有数据时为空行; 单独查询失败的统计不出现在结果中; 整体失败时返回 null.
+     */
+    Map<String, StatRow> getAllSyncedRows(UUID playerUUID, Collection<String> placeholderNames);
+
+    /**
+     * 获取某个统计总和最高的前 limit 名玩家.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @param limit           名次数.
+     * @return 按总和从大到小排列的行, 查询失败时返回 null.
+     */
+    List<LeaderboardEntry> getTopEntries(String placeholderName, int limit);
+
+    /**
+     * 获取某个统计所有玩家的总和, 用于建立名次索引.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @return 玩家UUID -> 总和, 查询失败时返回 null.
+     */
+    Map<UUID, Double> getAllTotals(String placeholderName);
+
+    /**
+     * 在一个事务中批量更新本服务器的统计数据.
+     * @param updates 待写入的数据.
+     * @return 如果所有数据都已提交则返回 true.
+     */
+    boolean updateLocalStats(Collection<StatUpdate> updates);
+
+    /**
+     * 获取变更记录中当前最大的 seq.
+     * @return 最大的 seq; 没有记录时返回 0, 查询失败时返回 -1.
+     */
+    long getLatestChangeSeq();
+
+    /**
+     * 按 seq 顺序读取某个位置之后的变更记录.
+     * @param afterSeq      只读取 seq 大于这个值的记录.
+     * @param limit         最多读取的条数.
+     * @param settleSeconds 写入超过这么多秒的记录视为已稳定.
+     * @return 变更记录, 查询失败时返回 null.
+     */
+    List<ChangeEntry> getChangesSince(long afterSeq, int limit, long settleSeconds);
+
+    /**
+     * 删除过期的变更记录.
+     * @param retentionSeconds 保留时间 (秒).
+     * @param limit            最多删除的行数.
+     * @return 删除的行数, 失败时返回 0.
+     */
+    int pruneChanges(long retentionSeconds, int limit);
+
+    /**
+     * 检查并迁移旧版本的表结构.
+     * @return 如果进行了迁移则返回 true.
+     */
+    boolean migrateAllTables();
+
+    /**
+     * 将旧布局中的数据迁移到 normalized 布局. 应在后台线程调用.
+     */
+    void migrateToNormalizedLayout();
+
+    /**
+     * 读取连接池的当前状态. 只读取内存中的计数, 不访问数据库.
+     * @return 连接池状态; 连接池尚未启动或已关闭时返回 null.
+     */
+    PoolStats getPoolStats();
+
+    /**
+     * 读取只读连接池的当前状态.
+     * @return 连接池状态; 没有单独的只读连接池或已关闭时返回 null.
+     */
+    PoolStats getReadPoolStats();
+
+    /**
+     * 只读连接池当前是否不可用 (读取暂时改用主库).
+     */
+    boolean isReadFallbackActive();
+
+    /**
+     * 关闭连接池.
+     */
+    void close();
+}
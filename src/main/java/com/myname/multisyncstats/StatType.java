@@ -0,0 +1,134 @@
+package com.myname.multisyncstats;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.regex.Pattern;
+
+/**
+ * 统计值的数值类型, 决定数据库中的列类型以及解析和显示方式.
+ */
+public enum StatType {
+    /**
+     * 整数, 存储为 BIGINT. 小数部分会被截断.
+     */
+    INTEGER("BIGINT"),
+    /**
+     * 小数, 存储为 DECIMAL(24,4).
+     */
+    DECIMAL("DECIMAL(24,4)");
+
+    private static final int DECIMAL_SCALE = 4;
+    // 逗号是千位分隔符: 每个逗号后面恰好是 3 位数字, 例如 "1,234" 或 "12,345.6"
+    private static final Pattern THOUSANDS_GROUPED = Pattern.compile("[+-]?\\d{1,3}(,\\d{3})+(\\.\\d*)?");
+    // 逗号是小数点: 只有一个逗号且没有点, 例如 "1,5"
+    private static final Pattern DECIMAL_COMMA = Pattern.compile("[+-]?\\d*,\\d+");
+
+    private final String sqlType;
+
+    StatType(String sqlType) {
+        this.sqlType = sqlType;
+    }
+
+    /**
+     * 对应的 SQL 列类型.
+     */
+    public String sqlType() {
+        return sqlType;
+    }
+
+    /**
+     * 将 PAPI 返回的字符串解析为数值. 兼容千位分隔符 (例如 "1,234") 和小数逗号 (例如 "1,5").
+     * 两种写法都成立时 (例如 "1,234") 按千位分隔符解析; 其他含逗号的写法视为无法解析.
+     * @param raw PAPI 返回的值.
+     * @return 按本类型规整后的数值, 无法解析时返回 null.
+     */
+    public BigDecimal parse(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String cleaned = normalizeCommas(raw.trim());
+        if (cleaned == null || cleaned.isEmpty()) {
+            return null;
+        }
+        try {
+            BigDecimal value = new BigDecimal(cleaned);
+            return this == INTEGER
+                    ? value.setScale(0, RoundingMode.DOWN)
+                    : value.setScale(DECIMAL_SCALE, RoundingMode.HALF_UP);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 去掉千位分隔符, 或把小数逗号换成小数点.
+     * @return 规整后的字符串; 逗号的用法无法识别时返回 null.
+     */
+    private static String normalizeCommas(String value) {
+        if (value.indexOf(',') < 0) {
+            return value;
+        }
+        if (THOUSANDS_GROUPED.matcher(value).matches()) {
+            return value.replace(",", "");
+        }
+        if (DECIMAL_COMMA.matcher(value).matches()) {
+            return value.replace(',', '.');
+        }
+        return null;
+    }
+
+    /**
+     * 将数据库中读出的数值格式化为占位符的显示值.
+     * @param value 数值, 可以为 null.
+     * @return 显示用的字符串, null 视为 "0".
+     */
+    public String format(BigDecimal value) {
+        if (value == null) {
+            return "0";
+        }
+        if (this == INTEGER) {
+            return value.setScale(0, RoundingMode.DOWN).toPlainString();
+        }
+        BigDecimal stripped = value.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0).toPlainString() : stripped.toPlainString();
+    }
+
+    /**
+     * 根据一个样本值推断类型: 含有小数部分时为 DECIMAL, 否则为 INTEGER.
+     * @param sample PAPI 返回的样本值.
+     * @return 推断出的类型.
+     */
+    public static StatType detect(String sample) {
+        BigDecimal value = DECIMAL.parse(sample);
+        if (value != null && value.stripTrailingZeros().scale() > 0) {
+            return DECIMAL;
+        }
+        return INTEGER;
+    }
+
+    /**
+     * 从指令参数中的名称解析类型 (不区分大小写).
+     * @param name 类型名称.
+     * @return 对应的类型, 无法识别时返回 null.
+     */
+    public static StatType fromName(String name) {
+        if (name != null) {
+            for (StatType type : values()) {
+                if (type.name().equalsIgnoreCase(name)) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析数据库 value_type 列中的名称. 旧版本的记录没有类型, 列默认值为 INTEGER, 因此无法识别时也返回 INTEGER.
+     * @param name 数据库中的类型名称.
+     * @return 对应的类型.
+     */
+    public static StatType fromStoredName(String name) {
+        StatType type = fromName(name);
+        return type != null ? type : INTEGER;
+    }
+}
@@ -0,0 +1,14 @@
+package com.myname.multisyncstats;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * 一次待写入的本服务器统计数据.
+ * @param playerUUID      玩家UUID.
+ * @param playerName      玩家名.
+ * @param placeholderName 占位符名称 (不带百分号).
+ * @param value           PAPI 解析并按统计类型规整后的数值.
+ */
+public record StatUpdate(UUID playerUUID, String playerName, String placeholderName, BigDecimal value) {
+}
@@ -0,0 +1,27 @@
+package com.myname.multisyncstats;
+
+/**
+ * 统计数据的存储布局.
+ */
+public enum StorageLayout {
+    /**
+     * 每个统计一张 mss_&lt;name&gt; 表, 每个服务器一列 (旧版布局).
+     */
+    WIDE,
+    /**
+     * 所有统计共用一张 mss_stat_values 表, 每个 (玩家, 统计, 服务器) 一行, 总和由索引上的 SUM 计算.
+     */
+    NORMALIZED;
+
+    /**
+     * 从配置值解析布局, 无法识别时返回 WIDE.
+     * @param value 配置中的值.
+     * @return 对应的布局.
+     */
+    public static StorageLayout fromConfig(String value) {
+        if (value != null && value.equalsIgnoreCase("normalized")) {
+            return NORMALIZED;
+        }
+        return WIDE;
+    }
+}
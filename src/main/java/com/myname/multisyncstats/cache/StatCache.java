@@ -0,0 +1,319 @@
+package com.myname.multisyncstats.cache;
+
+import com.myname.multisyncstats.StatRow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 玩家统计的内存缓存. 每个条目是一个玩家某个统计在各服务器上的整行, 总和, 最大值, 平均值和单个服务器的占位符共用同一个条目.
+ * - PAPI 线程调用 get 时只读内存, 不做任何 I/O.
+ * - 条目缺失或过期时, 先返回旧值 (或加载中的默认值), 再由专用线程池在后台刷新 (stale-while-revalidate).
+ * - 条目数量有上限, 超出后淘汰最久未被访问的条目.
+ * - 玩家加入时可以一次性预取该玩家的所有统计, 玩家退出时移除.
+ * - 每个条目有一个版本号, 失效时递增. 加载期间版本发生变化时, 加载结果可能早于那次写入, 条目保持过期并立即重新加载.
+ */
+public class StatCache {
+
+    private final Logger logger;
+    private final BiFunction<UUID, String, StatRow> loader;
+    private final BiFunction<UUID, Collection<String>, Map<String, StatRow>> bulkLoader;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final StatRow loadingRow;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor refreshExecutor;
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    // 读取时已有值 (可能已过期) 算作命中, 只能返回加载中默认值算作未命中
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param logger       插件日志.
+     * @param loader       从数据库加载某个玩家某个占位符整行的函数 (在后台线程调用, 失败时返回 null).
+     * @param bulkLoader   一次加载某个玩家多个占位符整行的函数 (在后台线程调用, 失败时返回 null).
+     * @param ttlSeconds   条目的有效期 (秒).
+     * @param maxEntries   最大条目数.
+     * @param threads      后台刷新线程数.
+     * @param loadingValue 条目首次加载完成前返回的值.
+     */
+    public StatCache(Logger logger, BiFunction<UUID, String, StatRow> loader,
+                     BiFunction<UUID, Collection<String>, Map<String, StatRow>> bulkLoader,
+                     long ttlSeconds, int maxEntries, int threads, String loadingValue) {
+        this.logger = logger;
+        this.loader = loader;
+        this.bulkLoader = bulkLoader;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+        this.maxEntries = Math.max(1, maxEntries);
+        this.loadingRow = StatRow.constant(loadingValue);
+
+        int poolSize = Math.max(1, threads);
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 队列有界: 数据库变慢时宁可跳过刷新 (继续返回旧值), 也不无限堆积任务
+        this.refreshExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.maxEntries),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "MultiSyncStats-Cache-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * 获取缓存中的整行. 永远不会阻塞或访问数据库.
+     * @param playerUUID      玩家UUID.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @return 缓存的行; 如果尚未加载, 返回所有值都是加载中默认值的行.
+     */
+    public StatRow get(UUID playerUUID, String placeholderName) {
+        Key key = new Key(playerUUID, placeholderName);
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry created = new Entry(now);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+                evictIfNeeded();
+            }
+        }
+        entry.lastAccess = now;
+
+        StatRow value = entry.value;
+        if (value == null || now - entry.loadedAt > ttlNanos) {
+            scheduleRefresh(key, entry);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        return loadingRow;
+    }
+
+    /**
+     * 在后台一次性加载某个玩家的多个统计, 填充缓存.
+     * 预取期间这些条目被标记为正在刷新, 因此同时到来的读取不会再各自触发一次查询.
+     * @param playerUUID       玩家UUID.
+     * @param placeholderNames 占位符名称 (不带百分号).
+     */
+    public void prefetch(UUID playerUUID, Collection<String> placeholderNames) {
+        if (placeholderNames.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Map<String, Entry> claimed = new HashMap<>();
+        Map<String, Long> versions = new HashMap<>();
+        for (String placeholderName : placeholderNames) {
+            Entry entry = entries.computeIfAbsent(new Key(playerUUID, placeholderName), k -> new Entry(now));
+            if (entry.refreshing.compareAndSet(false, true)) {
+                claimed.put(placeholderName, entry);
+                versions.put(placeholderName, entry.version.get());
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        evictIfNeeded();
+        try {
+            refreshExecutor.execute(() -> {
+                Map<String, StatRow> values = null;
+                try {
+                    values = bulkLoader.apply(playerUUID, claimed.keySet());
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "预取缓存失败 for " + playerUUID, e);
+                } finally {
+                    Map<String, StatRow> loaded = values != null ? values : Map.of();
+                    claimed.forEach((placeholderName, entry) -> finishLoad(new Key(playerUUID, placeholderName), entry,
+                            versions.get(placeholderName), loaded.get(placeholderName)));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            claimed.values().forEach(entry -> entry.refreshing.set(false));
+        }
+    }
+
+    /**
+     * 将某个条目标记为过期, 下次读取时会在后台刷新.
+     * 本服务器写入新数据后调用.
+     */
+    public void markStale(UUID playerUUID, String placeholderName) {
+        Entry entry = entries.get(new Key(playerUUID, placeholderName));
+        if (entry != null) {
+            entry.invalidate();
+        }
+    }
+
+    /**
+     * 如果某个条目在缓存中, 立即在后台重新加载, 使下一次读取就能拿到新值.
+     * 其他服务器写入新数据后调用; 不在缓存中的条目不做任何事.
+     */
+    public void refreshIfCached(UUID playerUUID, String placeholderName) {
+        Key key = new Key(playerUUID, placeholderName);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.invalidate();
+            scheduleRefresh(key, entry);
+        }
+    }
+
+    /**
+     * 移除某个玩家的所有缓存条目.
+     * @param playerUUID 玩家UUID.
+     */
+    public void invalidatePlayer(UUID playerUUID) {
+        entries.keySet().removeIf(key -> key.playerUUID().equals(playerUUID));
+    }
+
+    /**
+     * 清空所有缓存条目.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 当前缓存的条目数.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 累计命中次数.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 累计未命中次数.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 等待执行的后台刷新任务数.
+     */
+    public int getPendingRefreshCount() {
+        return refreshExecutor.getQueue().size();
+    }
+
+    /**
+     * 停止后台刷新线程.
+     */
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private void scheduleRefresh(Key key, Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        long version = entry.version.get();
+        try {
+            refreshExecutor.execute(() -> {
+                StatRow value = null;
+                try {
+                    value = loader.apply(key.playerUUID(), key.placeholderName());
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "刷新缓存失败 for " + key.placeholderName(), e);
+                } finally {
+                    finishLoad(key, entry, version, value);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满或已关闭, 下次读取时再尝试
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * 完成一次加载. 必须由持有 refreshing 标记的线程调用.
+     * @param version 开始加载时条目的版本.
+     * @param value   加载结果, 失败时为 null.
+     */
+    private void finishLoad(Key key, Entry entry, long version, StatRow value) {
+        if (value != null) {
+            entry.value = value;
+            entry.loadedAt = System.nanoTime();
+        }
+        entry.refreshing.set(false);
+        // 在释放标记之后检查版本: 加载期间到来的失效要么在这里被发现, 要么它自己的 scheduleRefresh 能拿到标记
+        if (entry.version.get() != version) {
+            entry.loadedAt = 0L;
+            scheduleRefresh(key, entry);
+        }
+    }
+
+    /**
+     * 超出上限时淘汰最久未访问的条目. 只允许一个线程同时执行, 并在后台线程中完成排序.
+     */
+    private void evictIfNeeded() {
+        if (entries.size() <= maxEntries || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    int excess = entries.size() - maxEntries;
+                    if (excess <= 0) {
+                        return;
+                    }
+                    // 多淘汰 10%, 避免每插入一个条目就触发一次排序
+                    int toRemove = excess + maxEntries / 10;
+                    List<Map.Entry<Key, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                    snapshot.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+                    for (int i = 0; i < toRemove && i < snapshot.size(); i++) {
+                        Map.Entry<Key, Entry> victim = snapshot.get(i);
+                        entries.remove(victim.getKey(), victim.getValue());
+                    }
+                } finally {
+                    evicting.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            evicting.set(false);
+        }
+    }
+
+    private record Key(UUID playerUUID, String placeholderName) {
+    }
+
+    private static final class Entry {
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+        // 每次失效递增
+        private final AtomicLong version = new AtomicLong();
+        private volatile StatRow value;
+        private volatile long loadedAt;
+        private volatile long lastAccess;
+
+        private Entry(long now) {
+            this.lastAccess = now;
+        }
+
+        private void invalidate() {
+            // 先递增版本再标记过期, 与 finishLoad 中的顺序相反, 保证两者交错时条目最终是过期的
+            version.incrementAndGet();
+            loadedAt = 0L;
+        }
+    }
+}
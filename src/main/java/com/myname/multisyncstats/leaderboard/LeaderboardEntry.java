@@ -0,0 +1,12 @@
+package com.myname.multisyncstats.leaderboard;
+
+import java.util.UUID;
+
+/**
+ * 排行榜中的一行.
+ * @param playerUUID 玩家UUID.
+ * @param playerName 玩家名.
+ * @param value      格式化后的总和.
+ */
+public record LeaderboardEntry(UUID playerUUID, String playerName, String value) {
+}
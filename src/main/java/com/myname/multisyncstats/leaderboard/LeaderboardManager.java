@@ -0,0 +1,110 @@
+package com.myname.multisyncstats.leaderboard;
+
+import com.myname.multisyncstats.StatStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 在内存中维护各统计的前 N 名排行榜.
+ * - 只有被 %mss_top_...% 请求过的统计才会被计算.
+ * - 专用线程按每个统计的刷新周期, 用一次索引查询重新计算, 然后整体替换 (读取方永远看到完整的快照).
+ * - 读取只是一次 Map 查找和一次 List 下标访问.
+ */
+public class LeaderboardManager {
+
+    private final Logger logger;
+    private final StatStorage storage;
+    private final int size;
+    private final ToLongFunction<String> refreshSecondsForStat;
+    private final Map<String, Leaderboard> leaderboards = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+
+    /**
+     * @param logger                插件日志.
+     * @param storage               存储后端.
+     * @param size                  每个排行榜保留的名次数.
+     * @param refreshSecondsForStat 每个统计的刷新周期 (秒).
+     */
+    public LeaderboardManager(Logger logger, StatStorage storage, int size, ToLongFunction<String> refreshSecondsForStat) {
+        this.logger = logger;
+        this.storage = storage;
+        this.size = Math.max(1, size);
+        this.refreshSecondsForStat = refreshSecondsForStat;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MultiSyncStats-Leaderboard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 每秒检查一次哪些排行榜到期需要刷新
+        this.refresher.scheduleWithFixedDelay(this::refreshDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 获取某个统计的第 rank 名. 不做任何 I/O.
+     * 第一次请求某个统计时, 会在后台开始维护它的排行榜.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @param rank            名次, 从 1 开始.
+     * @return 对应的行; 排行榜尚未加载或名次超出范围时返回 null.
+     */
+    public LeaderboardEntry getEntry(String placeholderName, int rank) {
+        Leaderboard leaderboard = leaderboards.get(placeholderName);
+        if (leaderboard == null) {
+            // 登记一个空排行榜, 由后台线程尽快加载
+            leaderboards.putIfAbsent(placeholderName, Leaderboard.EMPTY);
+            return null;
+        }
+        List<LeaderboardEntry> entries = leaderboard.entries();
+        return rank >= 1 && rank <= entries.size() ? entries.get(rank - 1) : null;
+    }
+
+    /**
+     * 每个排行榜保留的名次数.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 停止后台刷新线程.
+     */
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private void refreshDue() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Leaderboard> entry : leaderboards.entrySet()) {
+            String placeholderName = entry.getKey();
+            Leaderboard current = entry.getValue();
+            long refreshNanos = TimeUnit.SECONDS.toNanos(Math.max(1, refreshSecondsForStat.applyAsLong(placeholderName)));
+            if (current != Leaderboard.EMPTY && now - current.loadedAt() < refreshNanos) {
+                continue;
+            }
+            try {
+                List<LeaderboardEntry> entries = storage.getTopEntries(placeholderName, size);
+                // 查询失败时保留旧数据, 等到下一个周期再重试
+                List<LeaderboardEntry> snapshot = entries != null ? List.copyOf(entries) : current.entries();
+                leaderboards.put(placeholderName, new Leaderboard(snapshot, System.nanoTime()));
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "刷新排行榜失败 for " + placeholderName, e);
+            }
+        }
+    }
+
+    /**
+     * 一个统计的排行榜快照.
+     * @param entries  按总和从大到小排列的行.
+     * @param loadedAt 加载时间 (System.nanoTime).
+     */
+    private record Leaderboard(List<LeaderboardEntry> entries, long loadedAt) {
+        private static final Leaderboard EMPTY = new Leaderboard(List.of(), 0L);
+    }
+}
@@ -0,0 +1,147 @@
+package com.myname.multisyncstats.leaderboard;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 一个统计的名次索引 (order-statistic).
+ * - 基础数据是从数据库一次性加载的所有玩家总和, 排序后存放在基本类型数组中, 用二分查找统计 "比我高的人数".
+ * - 本服务器写入新数据后, 变化的玩家记录在覆盖层中: 覆盖后的新值和被覆盖的旧值各是一个有序数组.
+ *   查询时分别二分查找并修正计数, 因此查询是 O(log n + log k), 无需重新排序基础数据.
+ * - 覆盖层是不可变的快照, 写入时整体替换, 读取不加锁.
+ * - 覆盖层超过 MAX_OVERRIDES 个玩家后, 由 RankManager 调用 compact 在内存中合并为新的基础数据.
+ */
+public class RankIndex {
+
+    // 覆盖层的玩家数上限, 超过后合并到基础数据, 使每次写入的复制成本保持有界
+    static final int MAX_OVERRIDES = 1024;
+
+    private final double[] sortedAscending;
+    private final Map<UUID, Double> baseValues;
+    private volatile Overlay overlay = Overlay.EMPTY;
+
+    /**
+     * @param totals 玩家UUID -> 总和.
+     */
+    public RankIndex(Map<UUID, Double> totals) {
+        this.baseValues = new HashMap<>(totals);
+        this.sortedAscending = new double[totals.size()];
+        int i = 0;
+        for (double value : totals.values()) {
+            sortedAscending[i++] = value;
+        }
+        Arrays.sort(sortedAscending);
+    }
+
+    /**
+     * 获取玩家的名次 (1 表示第一名). 总和相同的玩家名次相同.
+     * @param playerUUID 玩家UUID.
+     * @return 名次; 玩家没有任何数据时返回 -1.
+     */
+    public int getRank(UUID playerUUID) {
+        Overlay current = overlay;
+        Double value = current.values.get(playerUUID);
+        if (value == null) {
+            value = baseValues.get(playerUUID);
+        }
+        if (value == null) {
+            return -1;
+        }
+        // 用覆盖层修正: 去掉被覆盖的旧值的贡献, 加上新值的贡献
+        int greater = countGreater(sortedAscending, value) - countGreater(current.replaced, value) + countGreater(current.added, value);
+        return greater + 1;
+    }
+
+    /**
+     * 应用本服务器写入导致的总和变化.
+     * @param playerUUID 玩家UUID.
+     * @param delta      总和的变化量.
+     */
+    public synchronized void applyDelta(UUID playerUUID, double delta) {
+        Overlay current = overlay;
+        Double previous = current.values.get(playerUUID);
+        Double base = baseValues.get(playerUUID);
+        double next = (previous != null ? previous : base != null ? base : 0.0) + delta;
+
+        Map<UUID, Double> values = new HashMap<>(current.values);
+        values.put(playerUUID, next);
+        double[] added = insert(previous != null ? remove(current.added, previous) : current.added, next);
+        // 第一次覆盖基础数据中的玩家时, 记录其旧值以便查询时扣除
+        double[] replaced = previous == null && base != null ? insert(current.replaced, base) : current.replaced;
+        overlay = new Overlay(values, added, replaced);
+    }
+
+    /**
+     * 覆盖层中的玩家数.
+     */
+    public int overrideCount() {
+        return overlay.values.size();
+    }
+
+    /**
+     * 把覆盖层合并到基础数据中, 返回新的索引.
+     */
+    public synchronized RankIndex compact() {
+        Map<UUID, Double> totals = new HashMap<>(baseValues);
+        totals.putAll(overlay.values);
+        return new RankIndex(totals);
+    }
+
+    /**
+     * 基础数据中的玩家数.
+     */
+    public int size() {
+        return sortedAscending.length;
+    }
+
+    private static int countGreater(double[] sorted, double value) {
+        return sorted.length - upperBound(sorted, value);
+    }
+
+    // 第一个大于 value 的位置
+    private static int upperBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static double[] insert(double[] sorted, double value) {
+        int position = upperBound(sorted, value);
+        double[] result = new double[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static double[] remove(double[] sorted, double value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        double[] result = new double[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, sorted.length - position - 1);
+        return result;
+    }
+
+    /**
+     * 覆盖层快照.
+     * @param values   玩家UUID -> 覆盖后的总和.
+     * @param added    覆盖后的总和, 升序.
+     * @param replaced 被覆盖的基础数据中的旧值, 升序.
+     */
+    private record Overlay(Map<UUID, Double> values, double[] added, double[] replaced) {
+        private static final Overlay EMPTY = new Overlay(Map.of(), new double[0], new double[0]);
+    }
+}
@@ -0,0 +1,103 @@
+package com.myname.multisyncstats.leaderboard;
+
+import com.myname.multisyncstats.StatStorage;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 为 %mss_rank_&lt;stat&gt;% 维护各统计的名次索引.
+ * - 只有被请求过的统计才会建立索引.
+ * - 专用线程定期从数据库完整重建索引, 并整体替换.
+ * - 两次重建之间, 本服务器的写入以增量方式应用到当前索引.
+ */
+public class RankManager {
+
+    private final Logger logger;
+    private final StatStorage storage;
+    private final long rebuildNanos;
+    private final Map<String, RankIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Long> builtAt = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rebuilder;
+
+    /**
+     * @param logger          插件日志.
+     * @param storage         存储后端.
+     * @param rebuildSeconds  完整重建的周期 (秒).
+     */
+    public RankManager(Logger logger, StatStorage storage, long rebuildSeconds) {
+        this.logger = logger;
+        this.storage = storage;
+        this.rebuildNanos = TimeUnit.SECONDS.toNanos(Math.max(1, rebuildSeconds));
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MultiSyncStats-Rank");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rebuilder.scheduleWithFixedDelay(this::rebuildDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 获取玩家在某个统计中的名次. 不做任何 I/O.
+     * 第一次请求某个统计时, 会在后台开始建立它的索引.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @param playerUUID      玩家UUID.
+     * @return 名次; 索引尚未建立或玩家没有数据时返回 -1.
+     */
+    public int getRank(String placeholderName, UUID playerUUID) {
+        RankIndex index = indexes.get(placeholderName);
+        if (index == null) {
+            // 登记该统计, 由后台线程尽快建立索引
+            builtAt.putIfAbsent(placeholderName, 0L);
+            return -1;
+        }
+        return index.getRank(playerUUID);
+    }
+
+    /**
+     * 应用本服务器写入导致的总和变化. 只影响已建立索引的统计.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @param playerUUID      玩家UUID.
+     * @param delta           总和的变化量.
+     */
+    public void applyDelta(String placeholderName, UUID playerUUID, double delta) {
+        // 覆盖层过大时在内存中合并, 不必等待下一次从数据库完整重建
+        indexes.computeIfPresent(placeholderName, (name, index) -> {
+            index.applyDelta(playerUUID, delta);
+            return index.overrideCount() > RankIndex.MAX_OVERRIDES ? index.compact() : index;
+        });
+    }
+
+    /**
+     * 停止后台重建线程.
+     */
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void rebuildDue() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Long> entry : builtAt.entrySet()) {
+            String placeholderName = entry.getKey();
+            if (entry.getValue() != 0L && now - entry.getValue() < rebuildNanos) {
+                continue;
+            }
+            try {
+                Map<UUID, Double> totals = storage.getAllTotals(placeholderName);
+                if (totals != null) {
+                    indexes.put(placeholderName, new RankIndex(totals));
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "重建名次索引失败 for " + placeholderName, e);
+            }
+            // 失败时同样等待一个周期后再重试
+            builtAt.put(placeholderName, System.nanoTime());
+        }
+    }
+}
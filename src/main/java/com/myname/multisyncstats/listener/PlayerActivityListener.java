@@ -0,0 +1,52 @@
+package com.myname.multisyncstats.listener;
+
+import com.myname.multisyncstats.MultiSyncStats;
+import com.myname.multisyncstats.sync.DirtyPlayerTracker;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerStatisticIncrementEvent;
+
+/**
+ * 事件驱动同步: 把产生了可能改变统计的活动的玩家标记为活跃. 未启用事件驱动同步时不做任何事.
+ * 这些事件非常频繁, 处理时只向集合中加入玩家UUID.
+ */
+public class PlayerActivityListener implements Listener {
+
+    private final MultiSyncStats plugin;
+
+    public PlayerActivityListener(MultiSyncStats plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStatisticIncrement(PlayerStatisticIncrementEvent event) {
+        markDirty(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        markDirty(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityDeath(EntityDeathEvent event) {
+        markDirty(event.getEntity().getKiller());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        markDirty(event.getPlayer());
+    }
+
+    private void markDirty(Player player) {
+        DirtyPlayerTracker tracker = plugin.getDirtyPlayerTracker();
+        if (tracker != null && player != null) {
+            tracker.markDirty(player.getUniqueId());
+        }
+    }
+}
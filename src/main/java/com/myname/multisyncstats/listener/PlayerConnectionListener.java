@@ -0,0 +1,45 @@
+package com.myname.multisyncstats.listener;
+
+import com.myname.multisyncstats.MultiSyncStats;
+import com.myname.multisyncstats.sync.DirtyPlayerTracker;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * 监听玩家加入和退出, 维护只针对在线玩家的内存状态.
+ */
+public class PlayerConnectionListener implements Listener {
+
+    private final MultiSyncStats plugin;
+
+    public PlayerConnectionListener(MultiSyncStats plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getWrittenValueTracker().track(event.getPlayer().getUniqueId());
+        // 在第一次渲染记分板之前, 用一次批量查询填充读取缓存
+        plugin.prefetchPlayer(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // 玩家可能正在切换到其他服务器, 立即写入最新数据, 不必等待下一个同步周期
+        // 必须在 forget 之前调用, 这样仍然可以过滤掉没有变化的值
+        // 事件驱动同步时, 有过活动但尚未同步的玩家即使关闭了 sync-on-quit 也在退出时同步, 否则这些变化会丢失
+        DirtyPlayerTracker dirtyPlayers = plugin.getDirtyPlayerTracker();
+        if (plugin.getConfig().getBoolean("sync-on-quit", true)
+                || dirtyPlayers != null && dirtyPlayers.isDirty(event.getPlayer().getUniqueId())) {
+            plugin.flushPlayer(event.getPlayer());
+        }
+        if (dirtyPlayers != null) {
+            dirtyPlayers.forget(event.getPlayer().getUniqueId());
+        }
+        plugin.getWrittenValueTracker().forget(event.getPlayer().getUniqueId());
+        plugin.getStatCache().invalidatePlayer(event.getPlayer().getUniqueId());
+    }
+}
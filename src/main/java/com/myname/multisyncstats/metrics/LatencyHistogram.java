@@ -0,0 +1,132 @@
+package com.myname.multisyncstats.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时直方图.
+ * - 固定的对数分桶 (50 微秒到 10 秒), 记录时只做一次线性查找和几次 LongAdder 累加, 不加锁也不分配对象.
+ * - 读取时生成快照, 百分位数按所在桶的上界估算.
+ */
+public final class LatencyHistogram {
+
+    // 各桶的上界 (微秒), 最后还有一个无上界的桶
+    private static final long[] BOUNDS_MICROS = {
+            50, 100, 250, 500,
+            1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MICROS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次耗时.
+     * @param nanos 耗时 (纳秒).
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int index = 0;
+        while (index < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        sumNanos.add(nanos);
+        // 只有可能超过当前最大值时才尝试 CAS
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * 记录从 startNanos (System.nanoTime) 到现在的耗时.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 生成当前数据的快照. 与记录并发进行时, 各项数据之间可能有轻微的不一致.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, count.sum(), sumNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * 各桶的上界 (秒), 用于 Prometheus 的 le 标签. 不包含最后一个无上界的桶.
+     */
+    static double[] boundsSeconds() {
+        double[] seconds = new double[BOUNDS_MICROS.length];
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            seconds[i] = BOUNDS_MICROS[i] / 1_000_000.0;
+        }
+        return seconds;
+    }
+
+    /**
+     * 直方图的快照.
+     * @param bucketCounts 各桶的次数 (非累计).
+     * @param count        总次数.
+     * @param sumNanos     总耗时 (纳秒).
+     * @param maxNanos     最大耗时 (纳秒).
+     */
+    public record Snapshot(long[] bucketCounts, long count, long sumNanos, long maxNanos) {
+
+        /**
+         * 平均耗时 (毫秒), 没有数据时为 0.
+         */
+        public double averageMillis() {
+            return count == 0 ? 0.0 : sumNanos / 1_000_000.0 / count;
+        }
+
+        /**
+         * 最大耗时 (毫秒).
+         */
+        public double maxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        /**
+         * 估算的百分位数 (毫秒): 取该百分位所在桶的上界, 但不超过最大值.
+         * @param quantile 0 到 1 之间的分位, 例如 0.95.
+         */
+        public double percentileMillis(double quantile) {
+            long total = 0;
+            for (long bucketCount : bucketCounts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0.0;
+            }
+            long target = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= target) {
+                    if (i >= BOUNDS_MICROS.length) {
+                        return maxMillis();
+                    }
+                    return Math.min(BOUNDS_MICROS[i] / 1_000.0, maxMillis());
+                }
+            }
+            return maxMillis();
+        }
+    }
+}
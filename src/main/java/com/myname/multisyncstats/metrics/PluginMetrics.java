@@ -0,0 +1,124 @@
+package com.myname.multisyncstats.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 插件的运行时指标.
+ * - 耗时直方图由各组件在热路径上直接记录 (无锁).
+ * - 队列深度、缓存命中率、连接池状态等以读取函数的形式登记, 只在输出时读取, 不影响热路径.
+ * - 可以输出为 Prometheus 文本格式.
+ */
+public class PluginMetrics {
+
+    private static final String PREFIX = "mss_";
+
+    private final LatencyHistogram syncCycle = new LatencyHistogram();
+    private final LatencyHistogram papiResolve = new LatencyHistogram();
+    private final LatencyHistogram dbWrite = new LatencyHistogram();
+    private final LatencyHistogram dbRead = new LatencyHistogram();
+    private final List<Sampled> sampled = new CopyOnWriteArrayList<>();
+
+    /**
+     * 一个同步周期从开始排队到所有玩家解析完成的耗时.
+     */
+    public LatencyHistogram syncCycle() {
+        return syncCycle;
+    }
+
+    /**
+     * 解析一个玩家所有占位符的耗时.
+     */
+    public LatencyHistogram papiResolve() {
+        return papiResolve;
+    }
+
+    /**
+     * 一次批量写入数据库的耗时.
+     */
+    public LatencyHistogram dbWrite() {
+        return dbWrite;
+    }
+
+    /**
+     * 一次为缓存读取数据库的耗时.
+     */
+    public LatencyHistogram dbRead() {
+        return dbRead;
+    }
+
+    /**
+     * 登记一个瞬时值 (例如队列深度).
+     * @param name  指标名 (不带 mss_ 前缀).
+     * @param help  说明.
+     * @param value 读取当前值的函数.
+     */
+    public void registerGauge(String name, String help, DoubleSupplier value) {
+        sampled.add(new Sampled(name, help, "gauge", value));
+    }
+
+    /**
+     * 登记一个累计计数.
+     * @param name  指标名 (不带 mss_ 前缀, 应以 _total 结尾).
+     * @param help  说明.
+     * @param value 读取当前值的函数.
+     */
+    public void registerCounter(String name, String help, DoubleSupplier value) {
+        sampled.add(new Sampled(name, help, "counter", value));
+    }
+
+    /**
+     * 以 Prometheus 文本格式输出所有指标.
+     */
+    public String renderPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        appendHistogram(out, "sync_cycle_seconds", "Duration of a sync cycle from queueing players to the last resolution.", syncCycle);
+        appendHistogram(out, "papi_resolve_seconds", "Time to resolve all placeholders of one player.", papiResolve);
+        appendHistogram(out, "db_write_seconds", "Duration of one batched database write.", dbWrite);
+        appendHistogram(out, "db_read_seconds", "Duration of one database read for the cache.", dbRead);
+        for (Sampled metric : new ArrayList<>(sampled)) {
+            double value;
+            try {
+                value = metric.value().getAsDouble();
+            } catch (RuntimeException e) {
+                // 对应的组件可能正在重载
+                continue;
+            }
+            out.append("# HELP ").append(PREFIX).append(metric.name()).append(' ').append(metric.help()).append('\n');
+            out.append("# TYPE ").append(PREFIX).append(metric.name()).append(' ').append(metric.type()).append('\n');
+            out.append(PREFIX).append(metric.name()).append(' ').append(format(value)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void appendHistogram(StringBuilder out, String name, String help, LatencyHistogram histogram) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        double[] bounds = LatencyHistogram.boundsSeconds();
+        String fullName = PREFIX + name;
+        out.append("# HELP ").append(fullName).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(fullName).append(" histogram\n");
+        long cumulative = 0;
+        long[] counts = snapshot.bucketCounts();
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += counts[i];
+            out.append(fullName).append("_bucket{le=\"").append(format(bounds[i])).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts[counts.length - 1];
+        out.append(fullName).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(fullName).append("_sum ").append(format(snapshot.sumNanos() / 1_000_000_000.0)).append('\n');
+        out.append(fullName).append("_count ").append(cumulative).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private record Sampled(String name, String help, String type, DoubleSupplier value) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.myname.multisyncstats.metrics;
+
+/**
+ * 数据库连接池的状态.
+ * @param active  正在使用的连接数.
+ * @param idle    空闲连接数.
+ * @param total   连接总数.
+ * @param waiting 正在等待连接的线程数.
+ */
+public record PoolStats(int active, int idle, int total, int waiting) {
+}
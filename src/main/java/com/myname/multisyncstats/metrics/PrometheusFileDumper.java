@@ -0,0 +1,70 @@
+package com.myname.multisyncstats.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 定期把指标以 Prometheus 文本格式写入文件, 供 node_exporter 的 textfile collector 等工具读取.
+ * 先写入临时文件再替换, 读取方不会看到写了一半的文件.
+ */
+public class PrometheusFileDumper {
+
+    private final Logger logger;
+    private final PluginMetrics metrics;
+    private final Path target;
+    private final Path temp;
+    private final ScheduledExecutorService dumper;
+
+    /**
+     * @param logger          插件日志.
+     * @param metrics         要输出的指标.
+     * @param target          目标文件.
+     * @param intervalSeconds 写入间隔 (秒).
+     */
+    public PrometheusFileDumper(Logger logger, PluginMetrics metrics, Path target, long intervalSeconds) {
+        this.logger = logger;
+        this.metrics = metrics;
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MultiSyncStats-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, intervalSeconds);
+        this.dumper.scheduleWithFixedDelay(this::dump, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止定期写入.
+     */
+    public void shutdown() {
+        dumper.shutdownNow();
+    }
+
+    private void dump() {
+        try {
+            Path parent = target.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(temp, metrics.renderPrometheus(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "写入指标文件失败: " + target, e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.myname.multisyncstats.placeholder;
+
+import com.myname.multisyncstats.PlaceholderRegistry;
+import com.myname.multisyncstats.cache.StatCache;
+import com.myname.multisyncstats.leaderboard.LeaderboardManager;
+import com.myname.multisyncstats.leaderboard.RankManager;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * MssExpansion 读取数据时依赖的组件. 由插件主类实现; 基准测试可以提供不依赖服务器的实现.
+ */
+public interface ExpansionContext {
+
+    /**
+     * 需要同步的占位符. 每次调用返回当前的注册表, 不访问数据库.
+     */
+    PlaceholderRegistry getPlaceholderRegistry();
+
+    StatCache getStatCache();
+
+    RankManager getRankManager();
+
+    LeaderboardManager getLeaderboardManager();
+
+    FileConfiguration getConfig();
+}
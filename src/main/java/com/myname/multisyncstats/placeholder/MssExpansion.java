@@ -1,6 +1,6 @@
 package com.myname.multisyncstats.placeholder;
 
-import com.myname.multisyncstats.MultiSyncStats;
+import com.myname.multisyncstats.leaderboard.LeaderboardEntry;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
@@ -8,37 +8,147 @@ import org.jetbrains.annotations.NotNull;
 /**
  * MultiSyncStats 的主 PlaceholderAPI 扩展.
  * 负责处理所有格式为 %mss_<placeholder>% 的占位符.
+ * 总和, 最大值, 平均值和单个服务器的值都从同一个缓存条目 (玩家的整行) 读取, 增加变体不会增加数据库查询.
  */
 public class MssExpansion extends PlaceholderExpansion {
 
-    private final MultiSyncStats plugin;
+    private final ExpansionContext plugin;
+    private final String version;
+    // 排行榜中没有对应名次时显示的内容, 创建和重载时从配置读取
+    private volatile String emptyName;
+    private volatile String emptyValue;
+    // 没有名次的玩家显示的内容
+    private volatile String unranked;
 
-    public MssExpansion(MultiSyncStats plugin) {
+    /**
+     * @param plugin  提供缓存、排行榜和配置的组件 (通常是插件主类).
+     * @param version 插件版本.
+     */
+    public MssExpansion(ExpansionContext plugin, String version) {
         this.plugin = plugin;
+        this.version = version;
+        reloadSettings();
+    }
+
+    /**
+     * 从配置重新读取占位符的显示设置, 避免每次请求都查询配置. 在 /mss reload 时调用.
+     */
+    public void reloadSettings() {
+        emptyName = plugin.getConfig().getString("leaderboards.empty-name", "---");
+        emptyValue = plugin.getConfig().getString("leaderboards.empty-value", "0");
+        unranked = plugin.getConfig().getString("ranks.unranked", "-");
     }
 
     @Override
     public String onRequest(OfflinePlayer player, @NotNull String params) {
         // params 是占位符的参数部分 (例如, "main" 来自 %mss_main%)
-        if (params.isEmpty()) {
+        if (player == null || params.isEmpty()) {
             return null;
         }
 
-        // 构建原始占位符的格式, 用于在已注册列表中检查
-        // 注意：我们的数据库和同步列表存储的是带 % 的格式，如 "%main%"
-        String originalPlaceholder = "%" + params + "%";
-
-        // 检查这个原始占位符是否在通过 /mss add 添加的列表中
-        if (plugin.getSyncedPlaceholders().contains(originalPlaceholder)) {
-            // 如果存在, 就委托给 DatabaseManager 来获取真实的同步数据.
+        // 检查这个占位符是否在通过 /mss add 添加的列表中 (注册表以不带 % 的名称为键, 无需拼接字符串)
+        if (plugin.getPlaceholderRegistry().contains(params)) {
+            // 如果存在, 就从内存缓存中读取同步数据 (不做任何 I/O, 过期数据由后台线程刷新).
             // 我们传递的是不带 % 的参数, 如 "main"
-            return plugin.getDatabaseManager().getSyncedData(player, params);
+            return plugin.getStatCache().get(player.getUniqueId(), params).total();
+        }
+
+        // 聚合值: %mss_<stat>_max%, %mss_<stat>_avg% 和 %mss_<stat>_server_<name>%, 与总和共用同一个缓存条目
+        String aggregate = onAggregateRequest(player, params);
+        if (aggregate != null) {
+            return aggregate;
+        }
+
+        // 名次: %mss_rank_<stat>%
+        if (params.startsWith("rank_")) {
+            String statName = params.substring("rank_".length());
+            if (!plugin.getPlaceholderRegistry().contains(statName)) {
+                return null;
+            }
+            int rank = plugin.getRankManager().getRank(statName, player.getUniqueId());
+            return rank > 0 ? String.valueOf(rank) : unranked;
+        }
+
+        // 排行榜: %mss_top_<stat>_<n>_name% 和 %mss_top_<stat>_<n>_value%
+        if (params.startsWith("top_")) {
+            return onTopRequest(params);
         }
 
         // 如果原始占位符未注册，则返回 null.
         return null;
     }
 
+    /**
+     * 处理聚合值占位符. 只有去掉后缀后的统计名已注册时才会匹配, 因此不会遮住 rank_ 和 top_ 占位符.
+     * @param player 玩家.
+     * @param params 占位符参数, 例如 "player_kills_max" 或 "player_kills_server_survival".
+     * @return 对应的值; 不是聚合值占位符时返回 null.
+     */
+    private String onAggregateRequest(OfflinePlayer player, String params) {
+        if (params.endsWith("_max")) {
+            String statName = params.substring(0, params.length() - "_max".length());
+            if (plugin.getPlaceholderRegistry().contains(statName)) {
+                return plugin.getStatCache().get(player.getUniqueId(), statName).max();
+            }
+        } else if (params.endsWith("_avg")) {
+            String statName = params.substring(0, params.length() - "_avg".length());
+            if (plugin.getPlaceholderRegistry().contains(statName)) {
+                return plugin.getStatCache().get(player.getUniqueId(), statName).average();
+            }
+        }
+        // 统计名和服务器名都可能包含下划线, 依次尝试每个 "_server_" 的位置
+        int separator = params.indexOf("_server_");
+        while (separator > 0) {
+            String statName = params.substring(0, separator);
+            String serverName = params.substring(separator + "_server_".length());
+            if (!serverName.isEmpty() && plugin.getPlaceholderRegistry().contains(statName)) {
+                return plugin.getStatCache().get(player.getUniqueId(), statName).server(serverName);
+            }
+            separator = params.indexOf("_server_", separator + 1);
+        }
+        return null;
+    }
+
+    /**
+     * 处理排行榜占位符. 统计名本身可能包含下划线, 因此从末尾开始解析.
+     * @param params 占位符参数, 例如 "top_statistic_mine_block_1_name".
+     * @return 对应名次的玩家名或数值; 格式错误或统计未注册时返回 null.
+     */
+    private String onTopRequest(String params) {
+        boolean wantsName;
+        String rest;
+        if (params.endsWith("_name")) {
+            wantsName = true;
+            rest = params.substring("top_".length(), params.length() - "_name".length());
+        } else if (params.endsWith("_value")) {
+            wantsName = false;
+            rest = params.substring("top_".length(), params.length() - "_value".length());
+        } else {
+            return null;
+        }
+
+        int separator = rest.lastIndexOf('_');
+        if (separator <= 0) {
+            return null;
+        }
+        String statName = rest.substring(0, separator);
+        int rank;
+        try {
+            rank = Integer.parseInt(rest.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (!plugin.getPlaceholderRegistry().contains(statName)) {
+            return null;
+        }
+
+        LeaderboardEntry entry = plugin.getLeaderboardManager().getEntry(statName, rank);
+        if (entry == null) {
+            return wantsName ? emptyName : emptyValue;
+        }
+        return wantsName ? entry.playerName() : entry.value();
+    }
+
     @Override
     public @NotNull String getIdentifier() {
         return "mss";
@@ -51,7 +161,7 @@ public class MssExpansion extends PlaceholderExpansion {
 
     @Override
     public @NotNull String getVersion() {
-        return plugin.getDescription().getVersion();
+        return version;
     }
 
     @Override
@@ -0,0 +1,14 @@
+package com.myname.multisyncstats.sync;
+
+import java.util.UUID;
+
+/**
+ * mss_changes 中的一条变更记录.
+ * @param seq             单调递增的序号.
+ * @param playerUUID      数据发生变化的玩家.
+ * @param placeholderName 占位符名称 (不带百分号).
+ * @param serverId        写入数据的服务器.
+ * @param settled         写入时间是否已经足够久, 之前的序号不会再出现 (尚未提交的事务).
+ */
+public record ChangeEntry(long seq, UUID playerUUID, String placeholderName, String serverId, boolean settled) {
+}
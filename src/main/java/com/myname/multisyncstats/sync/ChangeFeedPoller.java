@@ -0,0 +1,122 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatStorage;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 增量读取 mss_changes, 让本地缓存中被其他服务器修改过的总和失效.
+ * - 每次只读取上次位置之后的记录, 是一次主键范围查询.
+ * - 自增序号在并发事务中可能乱序提交: 较小的序号可能比较大的序号晚一点才可见.
+ *   因此读取位置只前进到 "已稳定" 的记录, 尚未稳定的记录会在下一次读取时再读到一遍.
+ * - 读取位置之后已经让缓存失效过的序号单独记录, 再次读到时跳过; 否则每次读取都会让同一批缓存重新失效, 触发重复的数据库读取.
+ *   这里记录的是序号集合而不是最大序号: 晚提交的较小序号可能出现在已处理的较大序号之前, 仍然需要处理.
+ * - 定期删除超过保留时间的记录. 所有服务器都会执行清理, 重复执行没有副作用.
+ */
+public class ChangeFeedPoller {
+
+    private static final int POLL_LIMIT = 5000;
+    private static final int PRUNE_LIMIT = 10000;
+    private static final long PRUNE_INTERVAL_SECONDS = 600L;
+
+    private final Logger logger;
+    private final StatStorage storage;
+    private final String serverName;
+    private final BiConsumer<UUID, String> invalidator;
+    private final long settleSeconds;
+    private final long retentionSeconds;
+    private final ScheduledExecutorService poller;
+    // 已处理到的位置; -1 表示尚未确定起点
+    private long cursor = -1L;
+    // 读取位置之后已经处理过的序号, 读取位置前进时移除
+    private final NavigableSet<Long> handledSeqs = new TreeSet<>();
+
+    /**
+     * @param logger           插件日志.
+     * @param storage          存储后端.
+     * @param serverName       本服务器名, 本服务器写入的记录会被跳过.
+     * @param invalidator      让某个玩家某个占位符的缓存失效的函数.
+     * @param pollMillis       读取间隔 (毫秒).
+     * @param settleSeconds    记录写入后多少秒视为已稳定.
+     * @param retentionSeconds 记录的保留时间 (秒).
+     */
+    public ChangeFeedPoller(Logger logger, StatStorage storage, String serverName, BiConsumer<UUID, String> invalidator,
+                            long pollMillis, long settleSeconds, long retentionSeconds) {
+        this.logger = logger;
+        this.storage = storage;
+        this.serverName = serverName;
+        this.invalidator = invalidator;
+        this.settleSeconds = Math.max(1, settleSeconds);
+        this.retentionSeconds = Math.max(this.settleSeconds * 2, retentionSeconds);
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MultiSyncStats-ChangeFeed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller.scheduleWithFixedDelay(this::poll, 0, Math.max(100, pollMillis), TimeUnit.MILLISECONDS);
+        this.poller.scheduleWithFixedDelay(this::prune, PRUNE_INTERVAL_SECONDS, PRUNE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止后台读取线程.
+     */
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            if (cursor < 0) {
+                // 从当前位置开始; 启动前的变化已经体现在数据库中, 缓存也是空的
+                cursor = storage.getLatestChangeSeq();
+                return;
+            }
+            List<ChangeEntry> changes = storage.getChangesSince(cursor, POLL_LIMIT, settleSeconds);
+            if (changes == null || changes.isEmpty()) {
+                return;
+            }
+            Set<String> seen = new HashSet<>();
+            long settledUpTo = cursor;
+            for (ChangeEntry change : changes) {
+                if (change.settled()) {
+                    settledUpTo = Math.max(settledUpTo, change.seq());
+                }
+                if (!handledSeqs.add(change.seq())) {
+                    continue;
+                }
+                // 本服务器写入后已经在本地让缓存失效
+                if (change.serverId().equals(serverName)) {
+                    continue;
+                }
+                if (seen.add(change.playerUUID() + ":" + change.placeholderName())) {
+                    invalidator.accept(change.playerUUID(), change.placeholderName());
+                }
+            }
+            cursor = settledUpTo;
+            handledSeqs.headSet(cursor, true).clear();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "处理变更记录失败", e);
+        }
+    }
+
+    private void prune() {
+        try {
+            while (storage.pruneChanges(retentionSeconds, PRUNE_LIMIT) >= PRUNE_LIMIT) {
+                // 一次没有删完, 继续下一批
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "清理变更记录失败", e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatUpdate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 收集一个同步周期中各个玩家的解析结果, 所有排队的玩家都完成后合成一批交给写入方.
+ * - 玩家退出时会单独立即写入最新数据. 此时本周期已经解析的旧值必须丢弃, 否则会在退出写入之后覆盖新值.
+ *   尚未取出的结果直接移除; 已经取出但尚未交给写入方的批次在交付时过滤掉该玩家.
+ * - 退出和交付互斥: 退出写入要么在整个批次交给写入方之后发生 (写入队列中的新值会替换旧值),
+ *   要么在批次过滤之前被记录.
+ * - 调度器停止时进入新的一代. Folia 上停止之前调度的实体任务可能在之后才回调, 这些回调按代号忽略,
+ *   不会再计入已经清零的计数, 也不会交出一个属于旧调度器的批次.
+ */
+class CycleResults {
+
+    private final ConcurrentLinkedQueue<StatUpdate> results = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // 保护 generation, 并使记录结果与 reset 互斥
+    private final Object generationLock = new Object();
+    private volatile long generation;
+
+    // 以下字段由 this 保护
+    // 每次玩家退出递增, 批次记录取出时的序号
+    private long sequence;
+    // 已经取出但尚未交付的批次数
+    private int inFlight;
+    // 退出的玩家 -> 退出时的序号; 没有未交付的批次时清空
+    private final Map<UUID, Long> departed = new HashMap<>();
+
+    /**
+     * 一个周期的结果.
+     * @param sequence 取出时的退出序号.
+     * @param updates  解析结果.
+     */
+    record Batch(long sequence, List<StatUpdate> updates) {
+    }
+
+    /**
+     * 登记一个排队的玩家.
+     * @return 这是本周期的第一个玩家时返回 true.
+     */
+    boolean begin() {
+        return outstanding.getAndIncrement() == 0;
+    }
+
+    /**
+     * 当前的代号. 调度解析任务时记录, 回调时传给 {@link #finish}.
+     */
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * 记录一个玩家的解析结果.
+     * @param generation 调度该玩家时的代号.
+     * @param updates    解析结果, 玩家被跳过时为空.
+     * @return 这是本周期的最后一个玩家时返回本周期的结果 (可能为空), 否则返回 null.
+     *         代号已经过期时忽略结果并返回 null. 结果不为空时, 调用方必须随后调用 {@link #deliver}.
+     */
+    Batch finish(long generation, List<StatUpdate> updates) {
+        synchronized (generationLock) {
+            if (generation != this.generation) {
+                return null;
+            }
+            results.addAll(updates);
+            if (outstanding.decrementAndGet() > 0) {
+                return null;
+            }
+        }
+        synchronized (this) {
+            List<StatUpdate> batch = drain();
+            if (!batch.isEmpty()) {
+                inFlight++;
+            }
+            return new Batch(sequence, batch);
+        }
+    }
+
+    /**
+     * 丢弃一个退出的玩家在本周期已经解析的结果. 必须在单独写入该玩家的最新数据之前调用.
+     * @param playerUUID 玩家UUID.
+     */
+    synchronized void discardPlayer(UUID playerUUID) {
+        results.removeIf(update -> update.playerUUID().equals(playerUUID));
+        if (inFlight > 0) {
+            departed.put(playerUUID, ++sequence);
+        }
+    }
+
+    /**
+     * 过滤掉取出之后才退出的玩家, 然后把批次交给写入方.
+     * @param batch    {@link #finish} 返回的批次.
+     * @param consumer 写入方.
+     */
+    synchronized void deliver(Batch batch, Consumer<List<StatUpdate>> consumer) {
+        try {
+            List<StatUpdate> updates = batch.updates();
+            if (!departed.isEmpty()) {
+                updates = new ArrayList<>(updates);
+                updates.removeIf(update -> departed.getOrDefault(update.playerUUID(), Long.MIN_VALUE) > batch.sequence());
+            }
+            if (!updates.isEmpty()) {
+                consumer.accept(updates);
+            }
+        } finally {
+            if (--inFlight == 0) {
+                departed.clear();
+            }
+        }
+    }
+
+    /**
+     * 进入新的一代: 清零未完成的玩家数, 之前调度的任务的回调都会被忽略.
+     * @return 已经解析但尚未交付的结果.
+     */
+    List<StatUpdate> reset() {
+        synchronized (generationLock) {
+            generation++;
+            outstanding.set(0);
+            return drain();
+        }
+    }
+
+    private List<StatUpdate> drain() {
+        List<StatUpdate> batch = new ArrayList<>();
+        StatUpdate update;
+        while ((update = results.poll()) != null) {
+            batch.add(update);
+        }
+        return batch;
+    }
+}
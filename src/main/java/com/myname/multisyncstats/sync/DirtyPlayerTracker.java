@@ -0,0 +1,120 @@
+package com.myname.multisyncstats.sync;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 事件驱动同步: 记录自上次同步以来有过活动的玩家, 同步周期只解析这些玩家.
+ * - 相关的 Bukkit 事件 (统计增加, 破坏方块, 击杀, 切换世界) 把玩家标记为活跃.
+ * - 第一次出现的玩家 (刚加入, 或调度器刚启动) 视为活跃.
+ * - 有些统计不会触发事件 (例如在线时长), 因此空闲超过 maxIdleCycles 个周期的玩家仍会同步一次.
+ * - 活跃标记在玩家被选中时清除. 因此有过活动的玩家在该周期解析所有占位符 (不受自适应同步间隔限制),
+ *   否则尚未到期的占位符在下一次活动或空闲同步之前都不会被解析.
+ * - 标记不加锁, 可以在多个区域线程上同时调用.
+ */
+public class DirtyPlayerTracker {
+
+    // 空闲玩家每隔多少个周期同步一次, 0 表示只在有活动时同步
+    private final int maxIdleCycles;
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    // 玩家 -> 上次被同步的周期
+    private final Map<UUID, Long> lastSyncedCycle = new ConcurrentHashMap<>();
+    private final LongAdder synced = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * @param maxIdleCycles 空闲玩家每隔多少个同步周期仍然同步一次, 0 表示不同步空闲玩家.
+     */
+    public DirtyPlayerTracker(int maxIdleCycles) {
+        this.maxIdleCycles = Math.max(0, maxIdleCycles);
+    }
+
+    /**
+     * 把玩家标记为活跃, 下一个同步周期会解析该玩家.
+     * @param playerUUID 玩家UUID.
+     */
+    public void markDirty(UUID playerUUID) {
+        dirty.add(playerUUID);
+    }
+
+    /**
+     * 玩家自上次同步以来是否有过活动.
+     */
+    public boolean isDirty(UUID playerUUID) {
+        return dirty.contains(playerUUID);
+    }
+
+    /**
+     * 判断本周期是否需要同步某个玩家, 需要时清除其活跃标记.
+     * @param playerUUID 玩家UUID.
+     * @param cycle      周期序号.
+     * @return 玩家有过活动或第一次出现时返回 ACTIVE, 空闲太久时返回 IDLE, 否则返回 SKIP.
+     */
+    public Claim claim(UUID playerUUID, long cycle) {
+        boolean wasDirty = dirty.remove(playerUUID);
+        Long last = lastSyncedCycle.putIfAbsent(playerUUID, cycle);
+        if (last == null || wasDirty) {
+            lastSyncedCycle.put(playerUUID, cycle);
+            synced.increment();
+            return Claim.ACTIVE;
+        }
+        if (maxIdleCycles > 0 && cycle - last >= maxIdleCycles) {
+            lastSyncedCycle.put(playerUUID, cycle);
+            synced.increment();
+            return Claim.IDLE;
+        }
+        skipped.increment();
+        return Claim.SKIP;
+    }
+
+    /**
+     * 停止跟踪一个玩家 (退出时).
+     * @param playerUUID 玩家UUID.
+     */
+    public void forget(UUID playerUUID) {
+        dirty.remove(playerUUID);
+        lastSyncedCycle.remove(playerUUID);
+    }
+
+    /**
+     * 当前等待同步的活跃玩家数量.
+     */
+    public int dirtyCount() {
+        return dirty.size();
+    }
+
+    /**
+     * 被同步周期选中的玩家累计次数.
+     */
+    public long getSyncedCount() {
+        return synced.sum();
+    }
+
+    /**
+     * 因空闲被跳过的玩家累计次数.
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * 一个玩家在某个周期的选择结果.
+     */
+    public enum Claim {
+        /**
+         * 有过活动或第一次出现, 解析所有占位符.
+         */
+        ACTIVE,
+        /**
+         * 空闲太久, 只解析到期的占位符.
+         */
+        IDLE,
+        /**
+         * 本周期跳过.
+         */
+        SKIP
+    }
+}
@@ -0,0 +1,151 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录每个占位符在 PlaceholderAPI.setPlaceholders 中花费的时间, 并限制过慢的占位符.
+ * - 每个占位符维护指数移动平均耗时; 平均值超过预算后被标记为慢占位符, 之后每 slowCycleDivisor 个同步周期才解析一次.
+ * - 平均值降到预算的一半以下时恢复正常周期 (留出余量, 避免在阈值附近反复切换).
+ * - 记录不加锁, 可以在多个区域线程上同时调用.
+ */
+public class PlaceholderProfiler {
+
+    // 指数移动平均中新样本的权重
+    private static final double EWMA_ALPHA = 0.2;
+    // 至少有这么多样本后才会判定为慢占位符
+    private static final int MIN_SAMPLES = 3;
+
+    private final long budgetNanos;
+    private final int slowCycleDivisor;
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * @param budgetMicros     每次解析的耗时预算 (微秒).
+     * @param slowCycleDivisor 慢占位符每隔多少个同步周期解析一次.
+     */
+    public PlaceholderProfiler(long budgetMicros, int slowCycleDivisor) {
+        this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, budgetMicros));
+        this.slowCycleDivisor = Math.max(1, slowCycleDivisor);
+    }
+
+    /**
+     * 记录一次解析的耗时.
+     * @param fullPlaceholder 完整的占位符 (例如, "%player_kills%").
+     * @param nanos           耗时 (纳秒).
+     * @return 如果这次记录使占位符进入或离开慢速状态则返回 true.
+     */
+    public boolean record(String fullPlaceholder, long nanos) {
+        Profile profile = profiles.computeIfAbsent(fullPlaceholder, k -> new Profile());
+        long samples = profile.count.sum();
+        profile.count.increment();
+        if (nanos > profile.maxNanos.get()) {
+            profile.maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+        double average = profile.updateAverage(nanos, samples == 0);
+
+        if (samples + 1 >= MIN_SAMPLES && average > budgetNanos) {
+            return profile.slow.compareAndSet(false, true);
+        }
+        if (average < budgetNanos / 2.0) {
+            return profile.slow.compareAndSet(true, false);
+        }
+        return false;
+    }
+
+    /**
+     * 选出本周期需要解析的占位符: 慢占位符只在每 slowCycleDivisor 个周期中的一个周期被解析.
+     * @param placeholders 所有统计.
+     * @param cycle        周期序号.
+     * @return 本周期需要解析的统计.
+     */
+    public List<StatDescriptor> selectForCycle(Collection<StatDescriptor> placeholders, long cycle) {
+        boolean includeSlow = cycle % slowCycleDivisor == 0;
+        List<StatDescriptor> selected = new ArrayList<>(placeholders.size());
+        for (StatDescriptor placeholder : placeholders) {
+            if (includeSlow || !isSlow(placeholder.placeholder())) {
+                selected.add(placeholder);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 某个占位符当前是否被限制为慢速周期.
+     */
+    public boolean isSlow(String fullPlaceholder) {
+        Profile profile = profiles.get(fullPlaceholder);
+        return profile != null && profile.slow.get();
+    }
+
+    /**
+     * 某个占位符当前的平均耗时 (微秒).
+     */
+    public double getAverageMicros(String fullPlaceholder) {
+        Profile profile = profiles.get(fullPlaceholder);
+        return profile != null ? profile.average() / 1_000.0 : 0.0;
+    }
+
+    /**
+     * 慢占位符每隔多少个同步周期解析一次.
+     */
+    public int getSlowCycleDivisor() {
+        return slowCycleDivisor;
+    }
+
+    /**
+     * 按平均耗时从高到低排列的前 limit 个占位符.
+     * @param limit 最多返回的数量.
+     */
+    public List<Stats> getWorst(int limit) {
+        List<Stats> all = new ArrayList<>(profiles.size());
+        profiles.forEach((placeholder, profile) -> all.add(new Stats(placeholder, profile.average() / 1_000.0,
+                profile.maxNanos.get() / 1_000.0, profile.count.sum(), profile.slow.get())));
+        all.sort(Comparator.comparingDouble(Stats::averageMicros).reversed());
+        return all.size() > limit ? all.subList(0, limit) : all;
+    }
+
+    /**
+     * 一个占位符的耗时统计.
+     * @param placeholder   完整的占位符.
+     * @param averageMicros 指数移动平均耗时 (微秒).
+     * @param maxMicros     最大耗时 (微秒).
+     * @param samples       解析次数.
+     * @param slow          是否被限制为慢速周期.
+     */
+    public record Stats(String placeholder, double averageMicros, double maxMicros, long samples, boolean slow) {
+    }
+
+    private static final class Profile {
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        // 指数移动平均 (纳秒), 以 double 的位形式保存以便 CAS 更新
+        private final AtomicLong averageBits = new AtomicLong(Double.doubleToLongBits(0.0));
+        private final AtomicBoolean slow = new AtomicBoolean(false);
+
+        private double updateAverage(long nanos, boolean first) {
+            while (true) {
+                long currentBits = averageBits.get();
+                double current = Double.longBitsToDouble(currentBits);
+                double next = first ? nanos : current + EWMA_ALPHA * (nanos - current);
+                if (averageBits.compareAndSet(currentBits, Double.doubleToLongBits(next))) {
+                    return next;
+                }
+            }
+        }
+
+        private double average() {
+            return Double.longBitsToDouble(averageBits.get());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatDescriptor;
+import com.myname.multisyncstats.StatUpdate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * 根据每个占位符的值实际变化的频率调整其同步间隔.
+ * - 间隔以同步周期为单位, 范围为 [minCycles, maxCycles].
+ * - 一个占位符被解析后, 只要有玩家的值与上次写入的值不同, 间隔减半; 所有玩家都没有变化时间隔加倍.
+ *   经常变化的占位符很快回到最短间隔, 几乎不变的占位符逐渐退到最长间隔, 不再消耗解析时间和写入.
+ * - 只有已经写入过的值才能判断是否变化; 没有可比较的值时间隔保持不变.
+ * - 事件驱动同步会在未到期的周期中解析有过活动的玩家. 每次到期最多调整一次间隔, 额外的结果不会加快间隔的增长.
+ * - 记录不加锁, 可以在多个线程上同时调用.
+ */
+public class SyncCadence {
+
+    private final int minCycles;
+    private final int maxCycles;
+    private final int initialCycles;
+    private final Map<String, Cadence> cadences = new ConcurrentHashMap<>();
+
+    /**
+     * @param minCycles     最短间隔 (同步周期数).
+     * @param maxCycles     最长间隔 (同步周期数).
+     * @param initialCycles 新占位符的初始间隔 (同步周期数).
+     */
+    public SyncCadence(int minCycles, int maxCycles, int initialCycles) {
+        this.minCycles = Math.max(1, minCycles);
+        this.maxCycles = Math.max(this.minCycles, maxCycles);
+        this.initialCycles = Math.min(this.maxCycles, Math.max(this.minCycles, initialCycles));
+    }
+
+    /**
+     * 选出本周期到期的占位符, 并记录它们在本周期被解析. 新占位符在第一个周期就会被解析.
+     * @param placeholders 候选统计.
+     * @param cycle        周期序号.
+     * @return 本周期需要解析的统计.
+     */
+    public List<StatDescriptor> selectForCycle(Collection<StatDescriptor> placeholders, long cycle) {
+        List<StatDescriptor> selected = new ArrayList<>(placeholders.size());
+        for (StatDescriptor placeholder : placeholders) {
+            Cadence cadence = cadences.computeIfAbsent(placeholder.name(), k -> new Cadence(initialCycles));
+            if (cadence.claim(cycle)) {
+                selected.add(placeholder);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 根据一批解析结果调整间隔.
+     * @param updates     解析出的数据.
+     * @param lastWritten 返回某个玩家某个占位符上次写入的值的函数, 没有记录时返回 null.
+     */
+    public void observe(Collection<StatUpdate> updates, BiFunction<UUID, String, BigDecimal> lastWritten) {
+        // 占位符名称 -> 是否有玩家的值发生变化; 没有可比较值的占位符不出现
+        Map<String, Boolean> changed = new HashMap<>();
+        for (StatUpdate update : updates) {
+            BigDecimal previous = lastWritten.apply(update.playerUUID(), update.placeholderName());
+            if (previous != null) {
+                changed.merge(update.placeholderName(), previous.compareTo(update.value()) != 0, Boolean::logicalOr);
+            }
+        }
+        changed.forEach((placeholderName, anyChanged) -> {
+            Cadence cadence = cadences.get(placeholderName);
+            if (cadence != null) {
+                cadence.adjust(anyChanged, minCycles, maxCycles);
+            }
+        });
+    }
+
+    /**
+     * 某个占位符当前的同步间隔 (同步周期数).
+     */
+    public int getIntervalCycles(String placeholderName) {
+        Cadence cadence = cadences.get(placeholderName);
+        return cadence != null ? cadence.interval : initialCycles;
+    }
+
+    /**
+     * 各占位符当前间隔的分布.
+     * @param placeholders 当前需要同步的统计.
+     */
+    public Summary summarize(Collection<StatDescriptor> placeholders) {
+        int atMin = 0;
+        int atMax = 0;
+        for (StatDescriptor placeholder : placeholders) {
+            int interval = getIntervalCycles(placeholder.name());
+            if (interval <= minCycles) {
+                atMin++;
+            } else if (interval >= maxCycles) {
+                atMax++;
+            }
+        }
+        return new Summary(atMin, atMax, placeholders.size());
+    }
+
+    /**
+     * 最短间隔 (同步周期数).
+     */
+    public int getMinCycles() {
+        return minCycles;
+    }
+
+    /**
+     * 最长间隔 (同步周期数).
+     */
+    public int getMaxCycles() {
+        return maxCycles;
+    }
+
+    /**
+     * 间隔的分布.
+     * @param atMin 处于最短间隔的占位符数量.
+     * @param atMax 处于最长间隔的占位符数量.
+     * @param total 占位符总数.
+     */
+    public record Summary(int atMin, int atMax, int total) {
+    }
+
+    private static final class Cadence {
+        private volatile int interval;
+        // 上次被解析的周期; 新占位符没有记录, 第一个周期就到期
+        private long lastCycle = Long.MIN_VALUE;
+        // 上次调整间隔时的 lastCycle
+        private long adjustedCycle = Long.MIN_VALUE;
+
+        private Cadence(int interval) {
+            this.interval = interval;
+        }
+
+        private synchronized boolean claim(long cycle) {
+            if (lastCycle != Long.MIN_VALUE && cycle - lastCycle < interval) {
+                return false;
+            }
+            lastCycle = cycle;
+            return true;
+        }
+
+        private synchronized void adjust(boolean changed, int minCycles, int maxCycles) {
+            // 本次到期已经调整过 (或从未到期)
+            if (lastCycle == adjustedCycle) {
+                return;
+            }
+            adjustedCycle = lastCycle;
+            interval = changed ? Math.max(minCycles, interval / 2) : Math.min(maxCycles, interval * 2);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.MultiSyncStats;
+import com.myname.multisyncstats.StatDescriptor;
+import com.myname.multisyncstats.StatUpdate;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 同步调度器: 解析在线玩家的 PAPI 占位符并交给写入方.
+ * - 每个同步周期开始时 (异步线程), 重新加载占位符列表, 并把在线玩家放入队列.
+ * - 每个 tick 的驱动任务从队列中取出一部分玩家, 使玩家均匀分布在整个周期内, 不会集中在同一个 tick.
+ * - 每个排队的玩家记录自己要解析的占位符. 上一个周期还没轮到的玩家不重复排队, 而是合并新周期选中的占位符,
+ *   因此新周期的占位符选择不会改变或丢失上一个周期已经选中的占位符.
+ * - 每个玩家只调度一个任务, 在该任务中解析这个玩家的所有占位符.
+ * - Bukkit 上解析直接在主线程的驱动任务中进行, 并受每 tick 时间预算限制;
+ *   Paper/Folia 上解析在玩家所在区域的实体调度器上进行.
+ * - 所有排队的玩家都解析完成后, 本周期的结果一次性交给写入方 (见 CycleResults).
+ *   玩家退出时单独写入, 本周期已经解析的该玩家的旧值被丢弃.
+ * - 每个占位符的解析耗时由 PlaceholderProfiler 记录, 过慢的占位符只在部分周期中解析.
+ * - 启用自适应同步时, 周期按最短间隔运行, 每个占位符只在 SyncCadence 判定到期的周期中解析.
+ * - 启用事件驱动同步时, 只有 DirtyPlayerTracker 判定有过活动 (或空闲太久) 的玩家进入队列.
+ *   有过活动的玩家解析所有占位符, 不受自适应同步间隔限制, 因为其活跃标记在本周期就被清除.
+ */
+public class SyncScheduler {
+
+    private final MultiSyncStats plugin;
+    private final Consumer<List<StatUpdate>> cycleConsumer;
+    private final long intervalSeconds;
+    private final long tickBudgetNanos;
+    private final PlaceholderProfiler profiler;
+    // 为 null 时每个周期解析所有占位符
+    private final SyncCadence cadence;
+    // 为 null 时每个周期解析所有在线玩家
+    private final DirtyPlayerTracker dirtyPlayers;
+
+    private final ConcurrentLinkedQueue<UUID> queue = new ConcurrentLinkedQueue<>();
+    // 排队的玩家 -> 该玩家要解析的统计
+    private final Map<UUID, List<StatDescriptor>> queued = new ConcurrentHashMap<>();
+    private final CycleResults results = new CycleResults();
+    private volatile int playersPerTick = 1;
+    private volatile long cycleStartNanos;
+    private long cycle;
+
+    private Object cycleTask;
+    private Object tickTask;
+
+    /**
+     * @param plugin          插件主类实例.
+     * @param cycleConsumer   接收一个周期解析结果的回调 (在异步线程调用).
+     * @param intervalSeconds 同步周期 (秒).
+     * @param tickBudgetMillis 每个 tick 用于解析的时间预算 (毫秒, 仅 Bukkit 主线程解析时生效).
+     * @param profiler        占位符耗时记录器.
+     * @param cadence         自适应同步间隔, 为 null 时不启用.
+     * @param dirtyPlayers    事件驱动同步的活跃玩家记录, 为 null 时不启用.
+     */
+    public SyncScheduler(MultiSyncStats plugin, Consumer<List<StatUpdate>> cycleConsumer, long intervalSeconds, double tickBudgetMillis,
+                         PlaceholderProfiler profiler, SyncCadence cadence, DirtyPlayerTracker dirtyPlayers) {
+        this.plugin = plugin;
+        this.profiler = profiler;
+        this.cadence = cadence;
+        this.dirtyPlayers = dirtyPlayers;
+        this.cycleConsumer = cycleConsumer;
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.tickBudgetNanos = (long) (Math.max(0.1, tickBudgetMillis) * 1_000_000L);
+    }
+
+    /**
+     * 占位符耗时记录器.
+     */
+    public PlaceholderProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * 自适应同步间隔; 未启用时返回 null.
+     */
+    public SyncCadence getCadence() {
+        return cadence;
+    }
+
+    /**
+     * 同步周期 (秒).
+     */
+    public long getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    /**
+     * 启动周期任务和每 tick 的驱动任务.
+     */
+    public void start() {
+        if (plugin.isPaperOrFolia()) {
+            // Paper/Folia: 周期任务在异步调度器上运行, 驱动任务在全局区域调度器上运行
+            cycleTask = plugin.getServer().getAsyncScheduler().runAtFixedRate(plugin, task -> startCycle(), 60L, intervalSeconds, TimeUnit.SECONDS);
+            tickTask = plugin.getServer().getGlobalRegionScheduler().runAtFixedRate(plugin, task -> tick(), 1L, 1L);
+        } else {
+            // Spigot/Other: 周期任务异步运行, 驱动任务在主线程上运行
+            cycleTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::startCycle, 60 * 20L, intervalSeconds * 20L);
+            tickTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    /**
+     * 停止所有任务. 已排队但尚未解析的玩家会被丢弃, 停止之前调度的解析任务之后才回调时结果也会被丢弃.
+     * @return 本周期已经解析但尚未交给写入方的数据.
+     */
+    public List<StatUpdate> stop() {
+        cancelTask(cycleTask);
+        cancelTask(tickTask);
+        cycleTask = null;
+        tickTask = null;
+        queue.clear();
+        queued.clear();
+        return results.reset();
+    }
+
+    /**
+     * 玩家退出: 移出队列, 并丢弃本周期已经解析的该玩家的结果. 必须在单独写入该玩家的最新数据之前调用.
+     * @param playerUUID 玩家UUID.
+     */
+    public void discardPlayer(UUID playerUUID) {
+        // 队列中的 UUID 留在原处, 驱动任务取出时发现没有记录就直接结束该玩家
+        queued.remove(playerUUID);
+        results.discardPlayer(playerUUID);
+    }
+
+    /**
+     * 周期开始 (异步线程): 重新加载占位符列表, 并把在线玩家放入队列.
+     */
+    private void startCycle() {
+        // 在每个同步周期开始时，重新从数据库加载占位符列表
+        plugin.reloadPlaceholdersFromDB();
+        long current = cycle++;
+        // 慢占位符只在部分周期中解析
+        List<StatDescriptor> all = profiler.selectForCycle(plugin.getPlaceholderRegistry().descriptors(), current);
+        // 自适应同步: 只解析间隔已到期的占位符
+        List<StatDescriptor> due = cadence != null ? cadence.selectForCycle(all, current) : all;
+        // 事件驱动同步时, 有过活动的玩家即使没有到期的占位符也要解析
+        if (dirtyPlayers == null ? due.isEmpty() : all.isEmpty()) {
+            return;
+        }
+
+        int added = 0;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            List<StatDescriptor> placeholders = due;
+            if (dirtyPlayers != null) {
+                // 事件驱动同步: 跳过自上次同步以来没有活动的玩家
+                DirtyPlayerTracker.Claim claim = dirtyPlayers.claim(player.getUniqueId(), current);
+                if (claim == DirtyPlayerTracker.Claim.SKIP) {
+                    continue;
+                }
+                if (claim == DirtyPlayerTracker.Claim.ACTIVE) {
+                    placeholders = all;
+                }
+            }
+            if (!placeholders.isEmpty() && enqueue(player.getUniqueId(), placeholders)) {
+                added++;
+            }
+        }
+        if (added == 0) {
+            return;
+        }
+        // 把玩家分布到周期的前 3/4 内, 为最后一批解析和写入留出余量
+        long spreadTicks = Math.max(1, intervalSeconds * 20L * 3 / 4);
+        playersPerTick = (int) Math.max(1, (queue.size() + spreadTicks - 1) / spreadTicks);
+    }
+
+    /**
+     * 把玩家放入队列. 上一个周期还没轮到的玩家不重复排队, 只合并本周期选中的统计.
+     * @return 玩家是新加入队列的时返回 true.
+     */
+    private boolean enqueue(UUID playerUUID, List<StatDescriptor> placeholders) {
+        while (true) {
+            if (queued.putIfAbsent(playerUUID, placeholders) == null) {
+                // 没有未完成的玩家时, 这是一个新周期的开始
+                if (results.begin()) {
+                    cycleStartNanos = System.nanoTime();
+                }
+                queue.add(playerUUID);
+                return true;
+            }
+            // 玩家在两次调用之间被驱动任务取出时重试
+            if (queued.computeIfPresent(playerUUID, (k, pending) -> mergePlaceholders(pending, placeholders)) != null) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 合并两次选中的统计. 同名的统计以后一次为准 (重新加载后类型可能变化).
+     */
+    private static List<StatDescriptor> mergePlaceholders(List<StatDescriptor> pending, List<StatDescriptor> added) {
+        Map<String, StatDescriptor> merged = new LinkedHashMap<>();
+        pending.forEach(stat -> merged.put(stat.name(), stat));
+        added.forEach(stat -> merged.put(stat.name(), stat));
+        return List.copyOf(merged.values());
+    }
+
+    /**
+     * 每 tick 的驱动任务: 取出本 tick 配额内的玩家进行解析.
+     */
+    private void tick() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + tickBudgetNanos;
+        long generation = results.generation();
+        for (int i = 0; i < playersPerTick; i++) {
+            UUID playerUUID = queue.poll();
+            if (playerUUID == null) {
+                return;
+            }
+            List<StatDescriptor> placeholders = queued.remove(playerUUID);
+            Player player = Bukkit.getPlayer(playerUUID);
+            // 调度器停止时队列被清空, 取出的玩家可能已经没有记录
+            if (player == null || placeholders == null) {
+                finishPlayer(generation, List.of());
+                continue;
+            }
+            if (plugin.isPaperOrFolia()) {
+                // Paper/Folia: 每个玩家一个实体任务, 在玩家所在区域的线程上解析
+                // 玩家已下线 (实体已退役) 时任务不会执行, 必须手动结束, 否则本周期的结果不会被写入
+                ScheduledTask scheduled = player.getScheduler().run(plugin,
+                        task -> finishPlayer(generation, resolvePlayer(player, placeholders)),
+                        () -> finishPlayer(generation, List.of()));
+                if (scheduled == null) {
+                    finishPlayer(generation, List.of());
+                }
+            } else {
+                // Spigot/Other: 驱动任务本身就在主线程上, 直接解析, 超出时间预算时剩下的玩家留到下一个 tick
+                finishPlayer(generation, resolvePlayer(player, placeholders));
+                if (System.nanoTime() > deadline) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 在当前线程解析一个玩家的所有占位符. 必须在可以安全访问该玩家的线程上调用.
+     * @param player       玩家.
+     * @param placeholders 要解析的统计.
+     * @return 解析成功并且是有效数字的结果.
+     */
+    public List<StatUpdate> resolvePlayer(Player player, List<StatDescriptor> placeholders) {
+        long start = System.nanoTime();
+        List<StatUpdate> updates = new ArrayList<>(placeholders.size());
+        for (StatDescriptor stat : placeholders) {
+            String fullPlaceholder = stat.placeholder();
+            String value;
+            long resolveStart = System.nanoTime();
+            try {
+                value = PlaceholderAPI.setPlaceholders(player, fullPlaceholder);
+            } catch (Exception e) {
+                plugin.getLogger().warning(plugin.getLanguageManager().get("console.papi.parse_error", "placeholder", fullPlaceholder));
+                continue;
+            } finally {
+                recordCost(fullPlaceholder, System.nanoTime() - resolveStart);
+            }
+            if (value.equals(fullPlaceholder)) {
+                plugin.getLogger().warning(plugin.getLanguageManager().get("console.papi.parse_fail", "placeholder", fullPlaceholder, "player_name", player.getName()));
+                continue;
+            }
+            // 在同步时解析一次, 数据库只接收规整后的数值
+            BigDecimal parsed = stat.type().parse(value);
+            if (parsed == null) {
+                plugin.getLogger().warning(plugin.getLanguageManager().get("console.papi.not_numeric", "placeholder", fullPlaceholder, "player_name", player.getName(), "value", value));
+                continue;
+            }
+            updates.add(new StatUpdate(player.getUniqueId(), player.getName(), stat.name(), parsed));
+        }
+        plugin.getMetrics().papiResolve().recordSince(start);
+        return updates;
+    }
+
+    /**
+     * 记录一个占位符的解析耗时, 在它进入或离开慢速周期时输出日志.
+     */
+    private void recordCost(String fullPlaceholder, long nanos) {
+        if (!profiler.record(fullPlaceholder, nanos)) {
+            return;
+        }
+        String averageMicros = String.valueOf(Math.round(profiler.getAverageMicros(fullPlaceholder)));
+        if (profiler.isSlow(fullPlaceholder)) {
+            plugin.getLogger().warning(plugin.getLanguageManager().get("console.papi.slow_placeholder",
+                    "placeholder", fullPlaceholder, "micros", averageMicros, "cycles", String.valueOf(profiler.getSlowCycleDivisor())));
+        } else {
+            plugin.getLogger().info(plugin.getLanguageManager().get("console.papi.slow_placeholder_recovered",
+                    "placeholder", fullPlaceholder, "micros", averageMicros));
+        }
+    }
+
+    /**
+     * 记录一个玩家的解析结果; 所有排队的玩家都完成后, 在异步线程中交给写入方.
+     * @param generation 调度该玩家时的代号, 调度器停止后才回调时结果被忽略.
+     */
+    private void finishPlayer(long generation, List<StatUpdate> updates) {
+        CycleResults.Batch batch = results.finish(generation, updates);
+        if (batch == null) {
+            return;
+        }
+        plugin.getMetrics().syncCycle().recordSince(cycleStartNanos);
+        if (batch.updates().isEmpty()) {
+            return;
+        }
+        if (plugin.isPaperOrFolia()) {
+            plugin.getServer().getAsyncScheduler().runNow(plugin, task -> completeCycle(batch));
+        } else {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> completeCycle(batch));
+        }
+    }
+
+    /**
+     * 在异步线程中根据本周期的结果调整同步间隔, 然后交给写入方.
+     */
+    private void completeCycle(CycleResults.Batch batch) {
+        if (cadence != null) {
+            // 与上次写入的值比较; 写入方随后会过滤掉同样的未变化值
+            WrittenValueTracker tracker = plugin.getWrittenValueTracker();
+            cadence.observe(batch.updates(), tracker::getLastWritten);
+        }
+        results.deliver(batch, cycleConsumer);
+    }
+
+    private static void cancelTask(Object task) {
+        if (task instanceof BukkitTask) {
+            ((BukkitTask) task).cancel();
+        } else if (task instanceof ScheduledTask) {
+            ((ScheduledTask) task).cancel();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatUpdate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 同步任务和数据库之间的写入队列 (write-behind).
+ * - 队列按 (玩家, 占位符) 合并: 同一个键的新值直接替换队列中尚未写入的旧值.
+ * - 队列有界: 已满时提交方最多等待一段时间, 仍然没有空位则丢弃该条数据并计数.
+ * - 写入在专用的线程池 (可以是虚拟线程) 上执行, 不占用公共线程池或服务器的异步线程.
+ * - 键按哈希分到固定数量的通道, 每个通道同一时间只有一个写入任务, 因此同一个键的写入不会乱序.
+ */
+public class WriteBehindQueue {
+
+    private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long DRAIN_POLL_MILLIS = 20L;
+
+    private final Logger logger;
+    private final Predicate<List<StatUpdate>> writer;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final Semaphore capacity;
+    private final Lane[] lanes;
+    private final ExecutorService executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final AtomicLong lastDropWarning = new AtomicLong(System.nanoTime() - DROP_WARNING_INTERVAL_NANOS);
+
+    /**
+     * @param logger             插件日志.
+     * @param writer             写入一批数据的函数, 成功时返回 true (在写入线程调用).
+     * @param capacity           队列中最多保留的条目数.
+     * @param workers            写入通道数, 即最多同时进行的写入数.
+     * @param virtualThreads     是否使用虚拟线程执行写入.
+     * @param batchSize          每次写入的最大条目数.
+     * @param offerTimeoutMillis 队列已满时提交方最多等待的时间 (毫秒).
+     */
+    public WriteBehindQueue(Logger logger, Predicate<List<StatUpdate>> writer, int capacity, int workers,
+                            boolean virtualThreads, int batchSize, long offerTimeoutMillis) {
+        this.logger = logger;
+        this.writer = writer;
+        this.batchSize = Math.max(1, batchSize);
+        this.offerTimeoutMillis = Math.max(0, offerTimeoutMillis);
+        this.capacity = new Semaphore(Math.max(1, capacity));
+
+        int laneCount = Math.max(1, workers);
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane();
+        }
+        if (virtualThreads) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("MultiSyncStats-Writer-", 1).factory());
+        } else {
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(laneCount, runnable -> {
+                Thread thread = new Thread(runnable, "MultiSyncStats-Writer-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 提交数据. 队列已满时最多阻塞 offerTimeoutMillis, 因此不要在服务器主线程或区域线程上调用.
+     * @param updates 要写入的数据.
+     */
+    public void submit(Collection<StatUpdate> updates) {
+        enqueue(updates, offerTimeoutMillis);
+    }
+
+    /**
+     * 提交数据, 队列已满时不等待直接丢弃. 可以在服务器主线程或区域线程上调用.
+     * @param updates 要写入的数据.
+     */
+    public void offer(Collection<StatUpdate> updates) {
+        enqueue(updates, 0);
+    }
+
+    /**
+     * 等待队列中的所有数据写入完成.
+     * @param timeoutMillis 最长等待时间 (毫秒).
+     * @return 全部写入完成时返回 true, 超时或被中断时返回 false.
+     */
+    public boolean awaitDrained(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            boolean idle = true;
+            for (Lane lane : lanes) {
+                if (!lane.pending.isEmpty()) {
+                    // 写入失败后通道会停下等待下一次提交, 这里主动重新调度
+                    schedule(lane);
+                    idle = false;
+                } else if (lane.draining.get()) {
+                    idle = false;
+                }
+            }
+            if (idle) {
+                return true;
+            }
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private void enqueue(Collection<StatUpdate> updates, long timeoutMillis) {
+        boolean waited = false;
+        for (StatUpdate update : updates) {
+            submitted.increment();
+            Key key = new Key(update.playerUUID(), update.placeholderName());
+            Lane lane = laneFor(key);
+            // 队列中已有这个键: 直接替换为新值, 不占用新的容量
+            if (lane.pending.replace(key, update) != null) {
+                merged.increment();
+                schedule(lane);
+                continue;
+            }
+            // 同一次提交中只等待一次, 避免队列已满时每条数据都等待一个超时
+            if (!acquire(waited ? 0 : timeoutMillis)) {
+                waited = true;
+                dropped.increment();
+                warnDropped();
+                continue;
+            }
+            if (lane.pending.putIfAbsent(key, update) != null) {
+                // 等待期间其他线程放入了同一个键
+                lane.pending.put(key, update);
+                capacity.release();
+                merged.increment();
+            }
+            schedule(lane);
+        }
+    }
+
+    /**
+     * 队列中等待写入的条目数.
+     */
+    public int pendingCount() {
+        int count = 0;
+        for (Lane lane : lanes) {
+            count += lane.pending.size();
+        }
+        return count;
+    }
+
+    /**
+     * 累计提交的条目数.
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * 累计被新值合并 (替换) 的条目数.
+     */
+    public long getMergedCount() {
+        return merged.sum();
+    }
+
+    /**
+     * 累计因队列已满或写入失败而丢弃的条目数.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 累计成功写入的条目数.
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * 累计写入失败的批次数.
+     */
+    public long getFailedBatchCount() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * 停止写入线程.
+     * @return 队列中尚未写入的数据, 可以提交给新的队列继续写入.
+     */
+    public List<StatUpdate> shutdown() {
+        executor.shutdownNow();
+        List<StatUpdate> remaining = new ArrayList<>();
+        for (Lane lane : lanes) {
+            remaining.addAll(lane.pending.values());
+            lane.pending.clear();
+        }
+        return remaining;
+    }
+
+    private Lane laneFor(Key key) {
+        return lanes[Math.floorMod(key.hashCode(), lanes.length)];
+    }
+
+    private boolean acquire(long timeoutMillis) {
+        try {
+            return timeoutMillis > 0
+                    ? capacity.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)
+                    : capacity.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void schedule(Lane lane) {
+        if (!lane.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> drain(lane));
+        } catch (RejectedExecutionException e) {
+            // 已关闭, 剩余数据由 shutdown 返回
+            lane.draining.set(false);
+        }
+    }
+
+    /**
+     * 分批写入一个通道中的所有数据. 写入失败时把数据放回队列, 等待下一次提交时重试.
+     */
+    private void drain(Lane lane) {
+        boolean ok = true;
+        try {
+            while (ok && !Thread.currentThread().isInterrupted()) {
+                List<StatUpdate> batch = takeBatch(lane);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                try {
+                    ok = writer.test(batch);
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "写入队列中的数据失败", e);
+                    ok = false;
+                }
+                if (ok) {
+                    written.add(batch.size());
+                } else {
+                    failedBatches.increment();
+                    requeue(lane, batch);
+                }
+            }
+        } finally {
+            lane.draining.set(false);
+        }
+        // 写入期间有新数据到达, 但它们的 schedule 调用因为本任务仍在运行而被跳过
+        if (ok && !lane.pending.isEmpty()) {
+            schedule(lane);
+        }
+    }
+
+    private List<StatUpdate> takeBatch(Lane lane) {
+        List<StatUpdate> batch = new ArrayList<>(Math.min(batchSize, lane.pending.size()));
+        Iterator<Map.Entry<Key, StatUpdate>> iterator = lane.pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            Map.Entry<Key, StatUpdate> entry = iterator.next();
+            if (lane.pending.remove(entry.getKey(), entry.getValue())) {
+                batch.add(entry.getValue());
+            }
+        }
+        capacity.release(batch.size());
+        return batch;
+    }
+
+    private void requeue(Lane lane, List<StatUpdate> batch) {
+        for (StatUpdate update : batch) {
+            Key key = new Key(update.playerUUID(), update.placeholderName());
+            if (lane.pending.containsKey(key)) {
+                // 队列中已经有更新的值, 旧值不再需要
+                merged.increment();
+            } else if (!capacity.tryAcquire()) {
+                dropped.increment();
+                warnDropped();
+            } else if (lane.pending.putIfAbsent(key, update) != null) {
+                capacity.release();
+                merged.increment();
+            }
+        }
+    }
+
+    /**
+     * 丢弃数据时输出警告, 最多每分钟一次.
+     */
+    private void warnDropped() {
+        long now = System.nanoTime();
+        long last = lastDropWarning.get();
+        if (now - last >= DROP_WARNING_INTERVAL_NANOS && lastDropWarning.compareAndSet(last, now)) {
+            logger.warning("写入队列已满, 已丢弃 " + dropped.sum() + " 条数据 (队列中 " + pendingCount() + " 条). 数据库可能响应过慢.");
+        }
+    }
+
+    private record Key(UUID playerUUID, String placeholderName) {
+    }
+
+    private static final class Lane {
+        private final ConcurrentHashMap<Key, StatUpdate> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+    }
+}
@@ -0,0 +1,77 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatUpdate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录每个在线玩家每个占位符最近一次成功写入数据库的值.
+ * 同步任务用它在数据到达存储后端之前过滤掉没有变化的值.
+ * 只跟踪在线玩家: 玩家加入时开始跟踪, 退出时清除.
+ */
+public class WrittenValueTracker {
+
+    private final Map<UUID, Map<String, BigDecimal>> lastWritten = new ConcurrentHashMap<>();
+
+    /**
+     * 开始跟踪一个玩家.
+     * @param playerUUID 玩家UUID.
+     */
+    public void track(UUID playerUUID) {
+        lastWritten.computeIfAbsent(playerUUID, k -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * 停止跟踪一个玩家并丢弃其记录.
+     * @param playerUUID 玩家UUID.
+     */
+    public void forget(UUID playerUUID) {
+        lastWritten.remove(playerUUID);
+    }
+
+    /**
+     * 过滤掉与上次写入值相同的数据.
+     * @param updates 本周期解析出的数据.
+     * @return 需要写入数据库的数据.
+     */
+    public List<StatUpdate> filterChanged(Collection<StatUpdate> updates) {
+        List<StatUpdate> changed = new ArrayList<>(updates.size());
+        for (StatUpdate update : updates) {
+            Map<String, BigDecimal> values = lastWritten.get(update.playerUUID());
+            if (values == null || !update.value().equals(values.get(update.placeholderName()))) {
+                changed.add(update);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 获取某个玩家某个占位符最近一次成功写入的值.
+     * @param playerUUID      玩家UUID.
+     * @param placeholderName 占位符名称 (不带百分号).
+     * @return 上次写入的值; 本次启动后尚未写入过时返回 null.
+     */
+    public BigDecimal getLastWritten(UUID playerUUID, String placeholderName) {
+        Map<String, BigDecimal> values = lastWritten.get(playerUUID);
+        return values != null ? values.get(placeholderName) : null;
+    }
+
+    /**
+     * 记录已成功提交到数据库的数据. 已退出 (未被跟踪) 的玩家会被忽略.
+     * @param updates 已提交的数据.
+     */
+    public void recordWritten(Collection<StatUpdate> updates) {
+        for (StatUpdate update : updates) {
+            Map<String, BigDecimal> values = lastWritten.get(update.playerUUID());
+            if (values != null) {
+                values.put(update.placeholderName(), update.value());
+            }
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.myname.multisyncstats.simulator;
+
+import com.myname.multisyncstats.DatabaseManager;
+import com.myname.multisyncstats.LanguageManager;
+import com.myname.multisyncstats.SqliteStorage;
+import com.myname.multisyncstats.StatStorage;
+import com.myname.multisyncstats.StatType;
+import com.myname.multisyncstats.StatUpdate;
+import com.myname.multisyncstats.metrics.LatencyHistogram;
+import com.myname.multisyncstats.metrics.PoolStats;
+import com.myname.multisyncstats.sync.WriteBehindQueue;
+import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 不依赖服务器的负载模拟器: 在一个进程中模拟多个子服务器 (各自的 server-name 和连接池),
+ * 共同读写一个本地数据库, 用来观察现有设计在不同规模下的表现.
+ * - backend=h2: MySQL 后端 (DatabaseManager) 连接嵌入式 H2 数据库 (MySQL 兼容模式).
+ * - backend=sqlite: SQLite 后端 (SqliteStorage) 共享一个 WAL 模式的文件, 与同一主机上的多个服务器相同.
+ * - 写入: 每个服务器每隔同步间隔为自己的在线玩家生成一批变化的数据, 通过与插件相同的 WriteBehindQueue 写入 updateLocalStats.
+ * - 读取: 每个服务器以固定速率读取任意服务器上任意玩家的统计 (getSyncedRow, 即缓存未命中时的读取).
+ * - 连接池: 每 100 毫秒采样一次活动连接数和等待连接的线程数.
+ * 运行结束后输出吞吐量, 写入/读取的 p50/p99 延迟, 以及连接池争用情况.
+ * <p>
+ * 参数形式为 --name=value, 通过 ./gradlew simulate --args="--servers=4 --players=500" 传入. 可用参数见 {@link Options}.
+ * 嵌入式数据库与 MySQL 的绝对耗时不同, 结果适合比较不同参数或不同版本, 不代表生产环境的绝对值.
+ */
+public final class LoadSimulator {
+
+    private static final long SEED = 20240601L;
+    private static final long POOL_SAMPLE_MILLIS = 100;
+
+    private LoadSimulator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Logger logger = Logger.getLogger("MultiSyncStats-Simulator");
+        logger.setLevel(Level.WARNING);
+        LanguageManager languageManager = loadLanguage();
+
+        System.out.println(options);
+        if (options.backend.equals("sqlite") && options.sqliteFile == null) {
+            options.sqliteFile = Files.createTempDirectory("mss-simulator").resolve("stats.db");
+        }
+        List<SimulatedServer> servers = new ArrayList<>(options.servers);
+        UUID[] population = players(options.servers * options.players);
+        try {
+            for (int i = 0; i < options.servers; i++) {
+                servers.add(new SimulatedServer("sim-" + (i + 1), i, options, logger, languageManager, population));
+            }
+            // 所有服务器共享同一组占位符, 由第一个服务器创建
+            SimulatedServer first = servers.get(0);
+            List<String> placeholders = new ArrayList<>(options.placeholders);
+            for (int i = 0; i < options.placeholders; i++) {
+                String placeholder = "sim_stat_" + i;
+                first.storage.addPlaceholder("%" + placeholder + "%", StatType.INTEGER);
+                placeholders.add(placeholder);
+            }
+            for (SimulatedServer server : servers) {
+                server.storage.loadPlaceholders();
+                server.storage.migrateToNormalizedLayout();
+                server.seed(placeholders);
+            }
+
+            System.out.println("预热 " + options.warmupSeconds + " 秒...");
+            for (SimulatedServer server : servers) {
+                server.start(placeholders);
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds));
+            for (SimulatedServer server : servers) {
+                server.resetMeasurements();
+            }
+            System.out.println("测量 " + options.durationSeconds + " 秒...");
+            long measureStart = System.nanoTime();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+            double elapsedSeconds = (System.nanoTime() - measureStart) / 1_000_000_000.0;
+
+            Totals totals = new Totals();
+            System.out.println();
+            for (SimulatedServer server : servers) {
+                server.report(elapsedSeconds, totals);
+            }
+            totals.report(elapsedSeconds);
+        } finally {
+            for (SimulatedServer server : servers) {
+                server.stop();
+            }
+        }
+    }
+
+    private static LanguageManager loadLanguage() throws Exception {
+        try (InputStream stream = LoadSimulator.class.getResourceAsStream("/lang/en_US.yml")) {
+            if (stream == null) {
+                throw new IllegalStateException("找不到语言文件: en_US");
+            }
+            return new LanguageManager(YamlConfiguration.loadConfiguration(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static UUID[] players(int count) {
+        Random random = new Random(SEED);
+        UUID[] players = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            players[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return players;
+    }
+
+    private static String format(LatencyHistogram.Snapshot snapshot) {
+        return String.format(Locale.ROOT, "p50 %.2fms, p99 %.2fms, max %.2fms (%d 次)",
+                snapshot.percentileMillis(0.5), snapshot.percentileMillis(0.99), snapshot.maxMillis(), snapshot.count());
+    }
+
+    /**
+     * 一个模拟的子服务器: 独立的 DatabaseManager, 连接池, 写入队列和读取线程.
+     */
+    private static final class SimulatedServer {
+
+        private final String name;
+        private final Options options;
+        private final StatStorage storage;
+        private final WriteBehindQueue writeBehindQueue;
+        private final UUID[] population;
+        private final UUID[] online;
+        private final ScheduledExecutorService scheduler;
+        private final ExecutorService readers;
+
+        private volatile LatencyHistogram writes = new LatencyHistogram();
+        private volatile LatencyHistogram reads = new LatencyHistogram();
+        private final LongAdder writtenRows = new LongAdder();
+        private final LongAdder poolSamples = new LongAdder();
+        private final LongAdder activeSum = new LongAdder();
+        private final LongAdder waitingSum = new LongAdder();
+        private final LongAdder contendedSamples = new LongAdder();
+        private final AtomicLong maxWaiting = new AtomicLong();
+        private long droppedAtReset;
+        private final Map<UUID, long[]> values = new HashMap<>();
+
+        private SimulatedServer(String name, int index, Options options, Logger logger, LanguageManager languageManager,
+                                UUID[] population) throws Exception {
+            this.name = name;
+            this.options = options;
+            this.population = population;
+            this.online = new UUID[options.players];
+            System.arraycopy(population, index * options.players, online, 0, options.players);
+
+            YamlConfiguration config = new YamlConfiguration();
+            config.set("storage.layout", options.layout);
+            config.set("change-feed.enabled", options.changeFeed);
+            if (options.backend.equals("sqlite")) {
+                this.storage = new SqliteStorage(logger, config, () -> name,
+                        SqliteStorage.createDataSource(options.sqliteFile, options.poolSize, 5000));
+            } else {
+                HikariDataSource dataSource = new HikariDataSource();
+                dataSource.setPoolName("MultiSyncStats-" + name);
+                // 同一进程中相同 URL 的连接共享一个数据库, 相当于多个服务器连接同一个 MySQL
+                dataSource.setJdbcUrl("jdbc:h2:" + options.database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE;DB_CLOSE_DELAY=-1");
+                dataSource.setMaximumPoolSize(options.poolSize);
+                this.storage = new DatabaseManager(logger, languageManager, config, () -> name, dataSource);
+            }
+            this.writeBehindQueue = new WriteBehindQueue(logger, this::write, options.queueCapacity, options.writers,
+                    true, options.batchSize, 500);
+
+            this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable, "MultiSyncStats-Simulator-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.readers = Executors.newFixedThreadPool(options.readThreads, runnable -> {
+                Thread thread = new Thread(runnable, "MultiSyncStats-Simulator-" + name + "-Reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * 写入所有在线玩家的初始数据. 第一次写入会为本服务器添加列 (ALTER TABLE), 在负载开始前完成, 不计入测量.
+         */
+        private void seed(List<String> placeholders) {
+            List<StatUpdate> updates = new ArrayList<>(online.length * placeholders.size());
+            for (int i = 0; i < online.length; i++) {
+                values.put(online[i], new long[placeholders.size()]);
+                for (String placeholder : placeholders) {
+                    updates.add(new StatUpdate(online[i], name + "_player" + i, placeholder, BigDecimal.ZERO));
+                }
+            }
+            for (int from = 0; from < updates.size(); from += options.batchSize) {
+                if (!storage.updateLocalStats(updates.subList(from, Math.min(updates.size(), from + options.batchSize)))) {
+                    throw new IllegalStateException("初始数据写入失败: " + name);
+                }
+            }
+        }
+
+        private void start(List<String> placeholders) {
+            Random random = new Random(SEED ^ name.hashCode());
+            // 各服务器的同步周期错开, 与实际部署一致
+            long intervalMillis = TimeUnit.SECONDS.toMillis(options.syncIntervalSeconds);
+            scheduler.scheduleAtFixedRate(() -> syncCycle(placeholders, random),
+                    random.nextLong(intervalMillis), intervalMillis, TimeUnit.MILLISECONDS);
+            if (options.readsPerSecond > 0) {
+                // 每 10 毫秒提交一批读取, 延迟从提交时开始计算, 包含排队等待读取线程的时间
+                double perTick = options.readsPerSecond / 100.0;
+                double[] carry = new double[1];
+                scheduler.scheduleAtFixedRate(() -> {
+                    carry[0] += perTick;
+                    int count = (int) carry[0];
+                    carry[0] -= count;
+                    for (int i = 0; i < count; i++) {
+                        long submitted = System.nanoTime();
+                        readers.execute(() -> read(placeholders, submitted));
+                    }
+                }, 0, 10, TimeUnit.MILLISECONDS);
+            }
+            scheduler.scheduleAtFixedRate(this::samplePool, POOL_SAMPLE_MILLIS, POOL_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 模拟一个同步周期: 部分玩家的部分统计发生变化, 交给写入队列.
+         */
+        private void syncCycle(List<String> placeholders, Random random) {
+            List<StatUpdate> updates = new ArrayList<>();
+            for (int i = 0; i < online.length; i++) {
+                long[] playerValues = values.get(online[i]);
+                for (int p = 0; p < playerValues.length; p++) {
+                    if (random.nextDouble() < options.changeRatio) {
+                        playerValues[p] += 1 + random.nextInt(5);
+                        updates.add(new StatUpdate(online[i], name + "_player" + i, placeholders.get(p), BigDecimal.valueOf(playerValues[p])));
+                    }
+                }
+            }
+            writeBehindQueue.submit(updates);
+        }
+
+        private boolean write(List<StatUpdate> batch) {
+            long start = System.nanoTime();
+            boolean success = storage.updateLocalStats(batch);
+            writes.recordSince(start);
+            if (success) {
+                writtenRows.add(batch.size());
+            }
+            return success;
+        }
+
+        private void read(List<String> placeholders, long submitted) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            UUID player = population[random.nextInt(population.length)];
+            storage.getSyncedRow(player, placeholders.get(random.nextInt(placeholders.size())));
+            reads.recordSince(submitted);
+        }
+
+        private void samplePool() {
+            PoolStats stats = storage.getPoolStats();
+            if (stats == null) {
+                return;
+            }
+            poolSamples.increment();
+            activeSum.add(stats.active());
+            waitingSum.add(stats.waiting());
+            if (stats.waiting() > 0) {
+                contendedSamples.increment();
+            }
+            maxWaiting.accumulateAndGet(stats.waiting(), Math::max);
+        }
+
+        /**
+         * 丢弃预热阶段的测量数据.
+         */
+        private void resetMeasurements() {
+            writes = new LatencyHistogram();
+            reads = new LatencyHistogram();
+            writtenRows.reset();
+            poolSamples.reset();
+            activeSum.reset();
+            waitingSum.reset();
+            contendedSamples.reset();
+            maxWaiting.set(0);
+            droppedAtReset = writeBehindQueue.getDroppedCount();
+        }
+
+        private void report(double elapsedSeconds, Totals totals) {
+            LatencyHistogram.Snapshot writeSnapshot = writes.snapshot();
+            LatencyHistogram.Snapshot readSnapshot = reads.snapshot();
+            long samples = Math.max(1, poolSamples.sum());
+            long dropped = writeBehindQueue.getDroppedCount() - droppedAtReset;
+
+            System.out.println("[" + name + "]");
+            System.out.printf(Locale.ROOT, "  写入: %.0f 行/秒, 批次 %s%n", writtenRows.sum() / elapsedSeconds, format(writeSnapshot));
+            System.out.printf(Locale.ROOT, "  读取: %.0f 次/秒, %s%n", readSnapshot.count() / elapsedSeconds, format(readSnapshot));
+            System.out.printf(Locale.ROOT, "  连接池: 平均活动 %.2f/%d, 平均等待 %.2f, 最多等待 %d, 有线程等待的采样 %.1f%%%n",
+                    activeSum.sum() / (double) samples, options.poolSize, waitingSum.sum() / (double) samples,
+                    maxWaiting.get(), contendedSamples.sum() * 100.0 / samples);
+            System.out.printf(Locale.ROOT, "  写入队列: 剩余 %d, 丢弃 %d%n", writeBehindQueue.pendingCount(), dropped);
+
+            totals.rows += writtenRows.sum();
+            totals.reads += readSnapshot.count();
+            totals.dropped += dropped;
+            totals.writeP99 = Math.max(totals.writeP99, writeSnapshot.percentileMillis(0.99));
+            totals.readP99 = Math.max(totals.readP99, readSnapshot.percentileMillis(0.99));
+        }
+
+        private void stop() {
+            scheduler.shutdownNow();
+            readers.shutdownNow();
+            writeBehindQueue.shutdown();
+            storage.close();
+        }
+    }
+
+    /**
+     * 所有服务器的汇总.
+     */
+    private static final class Totals {
+        private long rows;
+        private long reads;
+        private long dropped;
+        private double writeP99;
+        private double readP99;
+
+        private void report(double elapsedSeconds) {
+            System.out.println("[总计]");
+            System.out.printf(Locale.ROOT, "  写入 %.0f 行/秒, 读取 %.0f 次/秒, 丢弃 %d%n", rows / elapsedSeconds, reads / elapsedSeconds, dropped);
+            System.out.printf(Locale.ROOT, "  最差服务器的 p99: 写入批次 %.2fms, 读取 %.2fms%n", writeP99, readP99);
+        }
+    }
+
+    /**
+     * 模拟参数.
+     * - servers: 子服务器数量 (默认 3).
+     * - players: 每个服务器的在线玩家数 (默认 200).
+     * - placeholders: 同步的占位符数量 (默认 20).
+     * - sync-interval: 同步间隔, 秒 (默认 5).
+     * - change-ratio: 每个周期中发生变化的统计比例 (默认 0.3).
+     * - reads-per-second: 每个服务器每秒的数据库读取次数 (默认 200).
+     * - read-threads: 每个服务器的读取线程数 (默认 4).
+     * - pool-size: 每个服务器的连接池大小 (默认 10, 与 HikariCP 默认值相同).
+     * - writers, batch-size, queue-capacity: 写入队列参数 (默认 2, 1000, 50000).
+     * - backend: 存储后端, h2 (MySQL 后端) 或 sqlite (默认 h2).
+     * - layout: h2 后端的存储布局, wide 或 normalized (默认 wide).
+     * - change-feed: 是否写入变更记录 (默认 true).
+     * - database: H2 数据库, 例如 mem:mss 或 file:./build/simulator/mss (默认 mem:mss).
+     * - sqlite-file: SQLite 数据库文件 (默认在临时目录中新建).
+     * - warmup, duration: 预热和测量时长, 秒 (默认 10, 30).
+     */
+    private static final class Options {
+        private int servers = 3;
+        private int players = 200;
+        private int placeholders = 20;
+        private long syncIntervalSeconds = 5;
+        private double changeRatio = 0.3;
+        private double readsPerSecond = 200;
+        private int readThreads = 4;
+        private int poolSize = 10;
+        private int writers = 2;
+        private int batchSize = 1000;
+        private int queueCapacity = 50000;
+        private String backend = "h2";
+        private String layout = "wide";
+        private boolean changeFeed = true;
+        private String database = "mem:mss";
+        private Path sqliteFile;
+        private long warmupSeconds = 10;
+        private long durationSeconds = 30;
+
+        private static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("参数格式应为 --name=value: " + arg);
+                }
+                String key = arg.substring(2, separator);
+                String value = arg.substring(separator + 1);
+                switch (key) {
+                    case "servers" -> options.servers = Math.max(1, Integer.parseInt(value));
+                    case "players" -> options.players = Math.max(1, Integer.parseInt(value));
+                    case "placeholders" -> options.placeholders = Math.max(1, Integer.parseInt(value));
+                    case "sync-interval" -> options.syncIntervalSeconds = Math.max(1, Long.parseLong(value));
+                    case "change-ratio" -> options.changeRatio = Double.parseDouble(value);
+                    case "reads-per-second" -> options.readsPerSecond = Math.max(0, Double.parseDouble(value));
+                    case "read-threads" -> options.readThreads = Math.max(1, Integer.parseInt(value));
+                    case "pool-size" -> options.poolSize = Math.max(1, Integer.parseInt(value));
+                    case "writers" -> options.writers = Math.max(1, Integer.parseInt(value));
+                    case "batch-size" -> options.batchSize = Math.max(1, Integer.parseInt(value));
+                    case "queue-capacity" -> options.queueCapacity = Math.max(1, Integer.parseInt(value));
+                    case "backend" -> options.backend = value.toLowerCase(Locale.ROOT);
+                    case "layout" -> options.layout = value;
+                    case "change-feed" -> options.changeFeed = Boolean.parseBoolean(value);
+                    case "database" -> options.database = value;
+                    case "sqlite-file" -> options.sqliteFile = Path.of(value);
+                    case "warmup" -> options.warmupSeconds = Math.max(0, Long.parseLong(value));
+                    case "duration" -> options.durationSeconds = Math.max(1, Long.parseLong(value));
+                    default -> throw new IllegalArgumentException("未知参数: " + key);
+                }
+            }
+            return options;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "servers=%d players=%d placeholders=%d sync-interval=%ds change-ratio=%.2f reads-per-second=%.0f "
+                            + "read-threads=%d pool-size=%d writers=%d batch-size=%d backend=%s layout=%s change-feed=%s",
+                    servers, players, placeholders, syncIntervalSeconds, changeRatio, readsPerSecond,
+                    readThreads, poolSize, writers, batchSize, backend, layout, changeFeed);
+        }
+    }
+}
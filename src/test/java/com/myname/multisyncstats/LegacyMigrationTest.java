@@ -0,0 +1,100 @@
+package com.myname.multisyncstats;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 旧版本的表结构: 占位符列表没有类型列, 服务器列是默认值为 '0' 的 VARCHAR, 没有总和列.
+ */
+class LegacyMigrationTest {
+
+    private static final String PLAYER = "00000000-0000-0000-0000-000000000001";
+    private static final String OTHER = "00000000-0000-0000-0000-000000000002";
+
+    private HikariDataSource dataSource;
+    private DatabaseManager storage;
+
+    @BeforeEach
+    void createLegacyTables() throws Exception {
+        dataSource = TestSupport.h2DataSource(TestSupport.uniqueName("legacy"));
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE mss_synced_placeholders (id INT AUTO_INCREMENT PRIMARY KEY, placeholder_name VARCHAR(255) NOT NULL UNIQUE)");
+            stmt.execute("INSERT INTO mss_synced_placeholders (placeholder_name) VALUES ('%balance%'), ('%kills%')");
+            stmt.execute("CREATE TABLE mss_balance (player_uuid VARCHAR(36) PRIMARY KEY, player_name VARCHAR(16) NOT NULL, " +
+                    "srv_a VARCHAR(255) DEFAULT '0', srv_b VARCHAR(255) DEFAULT '0')");
+            stmt.execute("INSERT INTO mss_balance VALUES ('" + PLAYER + "', 'Alice', '1,234.56', '7'), ('" + OTHER + "', 'Bob', 'n/a', NULL)");
+            stmt.execute("CREATE TABLE mss_kills (player_uuid VARCHAR(36) PRIMARY KEY, player_name VARCHAR(16) NOT NULL, srv_a VARCHAR(255) DEFAULT '0')");
+            stmt.execute("INSERT INTO mss_kills VALUES ('" + PLAYER + "', 'Alice', '12')");
+        }
+        storage = new DatabaseManager(TestSupport.quietLogger(), TestSupport.languageManager(), TestSupport.config("wide"),
+                () -> "srv_a", dataSource);
+    }
+
+    @AfterEach
+    void close() {
+        storage.close();
+    }
+
+    @Test
+    void keepsDecimalValues() throws Exception {
+        assertTrue(storage.migrateAllTables());
+
+        // 含有小数的统计改为 DECIMAL, 不截断
+        assertEquals(StatType.DECIMAL, storage.getPlaceholders().get("balance").type());
+        assertEquals(StatType.INTEGER, storage.getPlaceholders().get("kills").type());
+        assertEquals(0, new BigDecimal("1234.56").compareTo(value("mss_balance", "srv_a", PLAYER)));
+        assertEquals(0, new BigDecimal("1241.56").compareTo(value("mss_balance", "mss_total", PLAYER)));
+        assertEquals(0, new BigDecimal("12").compareTo(value("mss_kills", "mss_total", PLAYER)));
+    }
+
+    @Test
+    void cleansInvalidValuesAndKeepsMissingRecords() throws Exception {
+        storage.migrateAllTables();
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(value("mss_balance", "srv_a", OTHER)));
+        // NULL 表示该服务器没有记录, 不计入平均值
+        assertNull(value("mss_balance", "srv_b", OTHER));
+        assertEquals("0", storage.getSyncedRow(UUID.fromString(OTHER), "balance").average());
+        assertEquals("620.78", storage.getSyncedRow(UUID.fromString(PLAYER), "balance").average());
+    }
+
+    @Test
+    void dropsServerColumnDefaults() throws Exception {
+        storage.migrateAllTables();
+
+        try (Connection conn = dataSource.getConnection();
+             ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, "mss_balance", "srv_%")) {
+            while (rs.next()) {
+                assertNull(rs.getString("COLUMN_DEF"), rs.getString("COLUMN_NAME"));
+            }
+        }
+    }
+
+    @Test
+    void secondRunChangesNothing() {
+        assertTrue(storage.migrateAllTables());
+        assertFalse(storage.migrateAllTables());
+    }
+
+    private BigDecimal value(String table, String column, String playerUUID) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT `" + column + "` FROM `" + table + "` WHERE player_uuid = '" + playerUUID + "'")) {
+            assertTrue(rs.next());
+            return rs.getBigDecimal(1);
+        }
+    }
+}
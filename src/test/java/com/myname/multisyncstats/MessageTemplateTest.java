@@ -0,0 +1,41 @@
+package com.myname.multisyncstats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MessageTemplateTest {
+
+    @Test
+    void replacesEveryKey() {
+        MessageTemplate template = MessageTemplate.compile("Added {placeholder} as {type}.");
+        assertEquals("Added kills as INTEGER.", template.format("placeholder", "kills", "type", "INTEGER"));
+        // 参数的顺序不影响结果
+        assertEquals("Added kills as INTEGER.", template.format("type", "INTEGER", "placeholder", "kills"));
+    }
+
+    @Test
+    void keepsKeysWithoutValues() {
+        MessageTemplate template = MessageTemplate.compile("{a} and {b}");
+        assertEquals("1 and {b}", template.format("a", "1"));
+        assertEquals("1 and {b}", template.format("a", "1", "b"));
+    }
+
+    @Test
+    void leavesOtherBracesUntouched() {
+        MessageTemplate template = MessageTemplate.compile("{} {not a key} {x}");
+        assertEquals("{} {not a key} y", template.format("x", "y"));
+    }
+
+    @Test
+    void nullValuesAreRenderedAsNull() {
+        assertEquals("value: null", MessageTemplate.compile("value: {v}").format("v", null));
+    }
+
+    @Test
+    void templatesWithoutKeysReturnTheSameText() {
+        MessageTemplate template = MessageTemplate.compile("plain text");
+        assertSame(template.text(), template.format("unused", "value"));
+    }
+}
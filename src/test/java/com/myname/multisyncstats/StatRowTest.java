@@ -0,0 +1,52 @@
+package com.myname.multisyncstats;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatRowTest {
+
+    @Test
+    void aggregatesOnlyServersWithARecord() {
+        Map<String, BigDecimal> values = new HashMap<>();
+        values.put("lobby", new BigDecimal("1"));
+        values.put("survival", new BigDecimal("1"));
+        values.put("creative", new BigDecimal("2"));
+        values.put("skyblock", null);
+        StatRow row = StatRow.of(StatType.INTEGER, null, values);
+
+        assertEquals("4", row.total());
+        assertEquals("2", row.max());
+        // 整数统计的平均值也保留小数, 没有记录的服务器不计入
+        assertEquals("1.33", row.average());
+        assertEquals("0", row.server("skyblock"));
+    }
+
+    @Test
+    void prefersTheStoredTotal() {
+        StatRow row = StatRow.of(StatType.INTEGER, new BigDecimal("10"), Map.of("lobby", new BigDecimal("3")));
+        assertEquals("10", row.total());
+        assertEquals("3", row.max());
+    }
+
+    @Test
+    void serverLookupIgnoresCase() {
+        StatRow row = StatRow.of(StatType.DECIMAL, null, Map.of("Lobby", new BigDecimal("2.5000")));
+        assertEquals("2.5", row.server("lobby"));
+        assertEquals("2.5", row.server("LOBBY"));
+        assertEquals("0", row.server("unknown"));
+    }
+
+    @Test
+    void emptyRowsReturnZeroEverywhere() {
+        StatRow row = StatRow.empty();
+        assertEquals("0", row.total());
+        assertEquals("0", row.max());
+        assertEquals("0", row.average());
+        assertEquals("0", row.server("lobby"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.myname.multisyncstats;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StatTypeTest {
+
+    @Test
+    void parseAcceptsThousandsSeparators() {
+        assertEquals(new BigDecimal("1234"), StatType.INTEGER.parse(" 1,234 "));
+        assertEquals(new BigDecimal("1234.5600"), StatType.DECIMAL.parse("1,234.56"));
+        assertEquals(new BigDecimal("1234567"), StatType.INTEGER.parse("1,234,567"));
+    }
+
+    @Test
+    void parseAcceptsDecimalCommas() {
+        assertEquals(new BigDecimal("1.5000"), StatType.DECIMAL.parse("1,5"));
+        assertEquals(new BigDecimal("-0.2500"), StatType.DECIMAL.parse("-0,25"));
+        assertEquals(new BigDecimal("12"), StatType.INTEGER.parse("12,75"));
+        assertEquals(StatType.DECIMAL, StatType.detect("3,25"));
+    }
+
+    @Test
+    void parseRejectsAmbiguousCommas() {
+        assertNull(StatType.INTEGER.parse("1,23,4"));
+        assertNull(StatType.DECIMAL.parse("1.234,5"));
+        assertNull(StatType.DECIMAL.parse("12,34.5"));
+        assertNull(StatType.INTEGER.parse(","));
+    }
+
+    @Test
+    void integerParseTruncates() {
+        assertEquals(new BigDecimal("12"), StatType.INTEGER.parse("12.99"));
+        assertEquals(new BigDecimal("-3"), StatType.INTEGER.parse("-3.5"));
+    }
+
+    @Test
+    void parseRejectsNonNumericValues() {
+        assertNull(StatType.INTEGER.parse(null));
+        assertNull(StatType.INTEGER.parse(""));
+        assertNull(StatType.DECIMAL.parse("abc"));
+    }
+
+    @Test
+    void formatStripsTrailingZeros() {
+        assertEquals("1.5", StatType.DECIMAL.format(new BigDecimal("1.5000")));
+        assertEquals("100", StatType.DECIMAL.format(new BigDecimal("100.0000")));
+        assertEquals("7", StatType.INTEGER.format(new BigDecimal("7.9")));
+        assertEquals("0", StatType.INTEGER.format(null));
+    }
+
+    @Test
+    void detectLooksAtTheFractionalPart() {
+        assertEquals(StatType.DECIMAL, StatType.detect("3.25"));
+        assertEquals(StatType.INTEGER, StatType.detect("3.00"));
+        assertEquals(StatType.INTEGER, StatType.detect("1,000"));
+        assertEquals(StatType.INTEGER, StatType.detect("n/a"));
+    }
+
+    @Test
+    void fromNameIsCaseInsensitiveAndRejectsUnknownNames() {
+        assertEquals(StatType.DECIMAL, StatType.fromName("decimal"));
+        assertEquals(StatType.INTEGER, StatType.fromName("Integer"));
+        assertNull(StatType.fromName("float"));
+        assertNull(StatType.fromName(null));
+    }
+
+    @Test
+    void fromStoredNameFallsBackToInteger() {
+        assertEquals(StatType.DECIMAL, StatType.fromStoredName("DECIMAL"));
+        assertEquals(StatType.INTEGER, StatType.fromStoredName("unknown"));
+        assertEquals(StatType.INTEGER, StatType.fromStoredName(null));
+    }
+}
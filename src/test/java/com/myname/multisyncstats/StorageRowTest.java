@@ -0,0 +1,149 @@
+package com.myname.multisyncstats;
+
+import com.myname.multisyncstats.sync.ChangeEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 两个服务器写入同一个数据库后, 各存储后端读出的整行应该一致.
+ * 只有一个服务器有记录的玩家, 平均值只计算这一个服务器.
+ */
+class StorageRowTest {
+
+    private static final UUID BOTH = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID ONLY_A = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID NONE = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    @ParameterizedTest
+    @ValueSource(strings = {"wide", "normalized"})
+    void mysqlLayoutsAgree(String layout) throws Exception {
+        String name = TestSupport.uniqueName("rows_" + layout);
+        LanguageManager languageManager = TestSupport.languageManager();
+        DatabaseManager serverA = new DatabaseManager(TestSupport.quietLogger(), languageManager, TestSupport.config(layout),
+                () -> "srv_a", TestSupport.h2DataSource(name));
+        DatabaseManager serverB = new DatabaseManager(TestSupport.quietLogger(), languageManager, TestSupport.config(layout),
+                () -> "srv_b", TestSupport.h2DataSource(name));
+        try {
+            serverA.addPlaceholder("%kills%", StatType.INTEGER);
+            serverA.addPlaceholder("%time%", StatType.DECIMAL);
+            serverB.loadPlaceholders();
+            serverA.migrateToNormalizedLayout();
+            serverB.migrateToNormalizedLayout();
+            write(serverA, serverB);
+            assertRows(serverA);
+        } finally {
+            serverA.close();
+            serverB.close();
+        }
+    }
+
+    @Test
+    void sqliteAgrees(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("stats.db");
+        SqliteStorage serverA = new SqliteStorage(TestSupport.quietLogger(), TestSupport.config("normalized"), () -> "srv_a",
+                SqliteStorage.createDataSource(file, 2, 5000));
+        SqliteStorage serverB = new SqliteStorage(TestSupport.quietLogger(), TestSupport.config("normalized"), () -> "srv_b",
+                SqliteStorage.createDataSource(file, 2, 5000));
+        try {
+            serverA.addPlaceholder("%kills%", StatType.INTEGER);
+            serverA.addPlaceholder("%time%", StatType.DECIMAL);
+            serverB.loadPlaceholders();
+            write(serverA, serverB);
+            assertRows(serverA);
+        } finally {
+            serverA.close();
+            serverB.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"wide", "normalized"})
+    void mysqlChangeFeedSkipsUnwrittenStats(String layout) throws Exception {
+        DatabaseManager storage = new DatabaseManager(TestSupport.quietLogger(), TestSupport.languageManager(), TestSupport.config(layout),
+                () -> "srv_a", TestSupport.h2DataSource(TestSupport.uniqueName("changes_" + layout)));
+        try {
+            storage.addPlaceholder("%kills%", StatType.INTEGER);
+            storage.migrateToNormalizedLayout();
+            assertChangesSkipUnwrittenStats(storage);
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    void sqliteChangeFeedSkipsUnwrittenStats(@TempDir Path dir) throws Exception {
+        SqliteStorage storage = new SqliteStorage(TestSupport.quietLogger(), TestSupport.config("normalized"), () -> "srv_a",
+                SqliteStorage.createDataSource(dir.resolve("stats.db"), 2, 5000));
+        try {
+            storage.addPlaceholder("%kills%", StatType.INTEGER);
+            assertChangesSkipUnwrittenStats(storage);
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    void sqliteVersionCheck() {
+        assertTrue(SqliteStorage.isSupportedVersion("3.24.0"));
+        assertTrue(SqliteStorage.isSupportedVersion("3.46.1"));
+        assertTrue(SqliteStorage.isSupportedVersion("4.0"));
+        assertFalse(SqliteStorage.isSupportedVersion("3.23.1"));
+        assertFalse(SqliteStorage.isSupportedVersion("3.8.11.2"));
+        assertFalse(SqliteStorage.isSupportedVersion(null));
+    }
+
+    private static void write(StatStorage serverA, StatStorage serverB) {
+        serverA.updateLocalStats(List.of(
+                update(BOTH, "kills", "10"), update(BOTH, "time", "1.25"),
+                update(ONLY_A, "kills", "4")));
+        serverB.updateLocalStats(List.of(
+                update(BOTH, "kills", "13"), update(BOTH, "time", "2.5")));
+    }
+
+    private static void assertChangesSkipUnwrittenStats(StatStorage storage) {
+        long since = storage.getLatestChangeSeq();
+        // 未注册的统计不会被写入, 也不能出现在变更记录中
+        assertTrue(storage.updateLocalStats(List.of(update(BOTH, "kills", "1"), update(BOTH, "unknown", "2"))));
+        List<ChangeEntry> changes = storage.getChangesSince(since, 100, 0);
+        assertEquals(1, changes.size());
+        assertEquals("kills", changes.get(0).placeholderName());
+    }
+
+    private static void assertRows(StatStorage storage) {
+        assertRow(storage.getSyncedRow(BOTH, "kills"), "23", "13", "11.5", "10", "13");
+        assertRow(storage.getSyncedRow(BOTH, "time"), "3.75", "2.5", "1.88", "1.25", "2.5");
+        assertRow(storage.getSyncedRow(ONLY_A, "kills"), "4", "4", "4", "4", "0");
+        assertRow(storage.getSyncedRow(NONE, "kills"), "0", "0", "0", "0", "0");
+
+        // 批量读取与逐个读取的结果相同, 未注册的统计返回空行
+        Map<String, StatRow> rows = storage.getAllSyncedRows(BOTH, List.of("kills", "time", "unknown"));
+        assertRow(rows.get("kills"), "23", "13", "11.5", "10", "13");
+        assertRow(rows.get("time"), "3.75", "2.5", "1.88", "1.25", "2.5");
+        assertRow(rows.get("unknown"), "0", "0", "0", "0", "0");
+        assertRow(storage.getAllSyncedRows(ONLY_A, List.of("kills")).get("kills"), "4", "4", "4", "4", "0");
+    }
+
+    private static void assertRow(StatRow row, String total, String max, String average, String serverA, String serverB) {
+        assertEquals(total, row.total(), "total");
+        assertEquals(max, row.max(), "max");
+        assertEquals(average, row.average(), "average");
+        assertEquals(serverA, row.server("srv_a"), "srv_a");
+        assertEquals(serverB, row.server("SRV_B"), "srv_b");
+    }
+
+    private static StatUpdate update(UUID playerUUID, String placeholderName, String value) {
+        return new StatUpdate(playerUUID, "Player", placeholderName, new BigDecimal(value));
+    }
+}
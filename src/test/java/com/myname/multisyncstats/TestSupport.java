@@ -0,0 +1,89 @@
+package com.myname.multisyncstats;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 测试共用的工具: 不依赖服务器的配置, 语言管理器和嵌入式数据库.
+ */
+public final class TestSupport {
+
+    private TestSupport() {
+    }
+
+    /**
+     * 安静的日志, 只输出警告和错误.
+     */
+    public static Logger quietLogger() {
+        Logger logger = Logger.getLogger("MultiSyncStats-Test");
+        logger.setLevel(Level.WARNING);
+        return logger;
+    }
+
+    /**
+     * 从插件 JAR 中的英文语言文件创建语言管理器.
+     */
+    public static LanguageManager languageManager() throws Exception {
+        try (InputStream stream = TestSupport.class.getResourceAsStream("/lang/en_US.yml")) {
+            if (stream == null) {
+                throw new IllegalStateException("找不到语言文件: en_US");
+            }
+            return new LanguageManager(YamlConfiguration.loadConfiguration(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * 插件配置, 只设置存储布局, 其余使用默认值.
+     * @param layout "wide" 或 "normalized".
+     */
+    public static YamlConfiguration config(String layout) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("storage.layout", layout);
+        return config;
+    }
+
+    /**
+     * 创建一个内存 H2 数据库 (MySQL 兼容模式) 的连接池. 同名的连接池共享同一个数据库.
+     * @param name 数据库名.
+     */
+    public static HikariDataSource h2DataSource(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        // VALUE 在 H2 中是关键字, 但在 MySQL 中可以作为列名
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(4);
+        return dataSource;
+    }
+
+    /**
+     * 每个测试使用不同的数据库名, 互不影响.
+     * @param prefix 名称前缀.
+     */
+    public static String uniqueName(String prefix) {
+        return prefix + "_" + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * 等待后台线程使条件成立.
+     * @param condition     条件.
+     * @param timeoutMillis 最长等待时间 (毫秒).
+     * @return 条件在超时前成立时返回 true.
+     */
+    public static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+package com.myname.multisyncstats.cache;
+
+import com.myname.multisyncstats.StatRow;
+import com.myname.multisyncstats.TestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatCacheTest {
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    // 模拟数据库中的总和
+    private final AtomicReference<String> stored = new AtomicReference<>("1");
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicInteger bulkLoads = new AtomicInteger();
+    private StatCache cache;
+
+    @AfterEach
+    void shutdown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    private StatCache create(BiFunction<UUID, String, StatRow> loader) {
+        BiFunction<UUID, Collection<String>, Map<String, StatRow>> bulkLoader = (uuid, names) -> {
+            bulkLoads.incrementAndGet();
+            Map<String, StatRow> rows = new HashMap<>();
+            names.forEach(name -> rows.put(name, StatRow.constant(stored.get())));
+            return rows;
+        };
+        cache = new StatCache(TestSupport.quietLogger(), loader, bulkLoader, 3600, 100, 2, "...");
+        return cache;
+    }
+
+    private StatCache create() {
+        return create((uuid, name) -> {
+            loads.incrementAndGet();
+            return StatRow.constant(stored.get());
+        });
+    }
+
+    @Test
+    void missReturnsLoadingValueThenLoads() throws Exception {
+        StatCache cache = create();
+        assertEquals("...", cache.get(PLAYER, "kills").total());
+        assertTrue(TestSupport.await(() -> "1".equals(cache.get(PLAYER, "kills").total()), 5000));
+        // 加载完成前的多次读取只触发一次加载
+        assertEquals(1, loads.get());
+        assertTrue(cache.getMissCount() >= 1);
+    }
+
+    @Test
+    void markStaleServesOldValueWhileReloading() throws Exception {
+        StatCache cache = create();
+        cache.get(PLAYER, "kills");
+        assertTrue(TestSupport.await(() -> "1".equals(cache.get(PLAYER, "kills").total()), 5000));
+
+        stored.set("2");
+        cache.markStale(PLAYER, "kills");
+        // 过期后仍先返回旧值, 同时在后台刷新
+        assertEquals("1", cache.get(PLAYER, "kills").total());
+        assertTrue(TestSupport.await(() -> "2".equals(cache.get(PLAYER, "kills").total()), 5000));
+    }
+
+    @Test
+    void refreshIfCachedIgnoresUncachedEntries() throws Exception {
+        StatCache cache = create();
+        cache.refreshIfCached(PLAYER, "kills");
+        Thread.sleep(50);
+        assertEquals(0, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidationDuringLoadIsNotLost() throws Exception {
+        CountDownLatch firstLoadStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstLoad = new CountDownLatch(1);
+        StatCache cache = create((uuid, name) -> {
+            // 先读取数据, 再等待: 模拟在另一个服务器写入之前就已经读到旧值的查询
+            String value = stored.get();
+            if (loads.incrementAndGet() == 1) {
+                firstLoadStarted.countDown();
+                try {
+                    releaseFirstLoad.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return StatRow.constant(value);
+        });
+
+        cache.get(PLAYER, "kills");
+        assertTrue(firstLoadStarted.await(5, TimeUnit.SECONDS));
+        stored.set("2");
+        // 刷新正在进行, 这次失效不能被正在进行的加载吞掉
+        cache.refreshIfCached(PLAYER, "kills");
+        releaseFirstLoad.countDown();
+
+        assertTrue(TestSupport.await(() -> "2".equals(cache.get(PLAYER, "kills").total()), 5000));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void prefetchLoadsAllPlaceholdersAtOnce() throws Exception {
+        StatCache cache = create();
+        cache.prefetch(PLAYER, List.of("kills", "deaths", "time"));
+        assertTrue(TestSupport.await(() -> "1".equals(cache.get(PLAYER, "time").total()), 5000));
+        assertEquals("1", cache.get(PLAYER, "kills").total());
+        assertEquals("1", cache.get(PLAYER, "deaths").total());
+        assertEquals(1, bulkLoads.get());
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void invalidatePlayerRemovesItsEntries() throws Exception {
+        StatCache cache = create();
+        cache.prefetch(PLAYER, List.of("kills", "deaths"));
+        assertTrue(TestSupport.await(() -> cache.size() == 2 && "1".equals(cache.get(PLAYER, "kills").total()), 5000));
+        cache.invalidatePlayer(PLAYER);
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,79 @@
+package com.myname.multisyncstats.leaderboard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RankIndexTest {
+
+    private static final UUID A = new UUID(0, 1);
+    private static final UUID B = new UUID(0, 2);
+    private static final UUID C = new UUID(0, 3);
+    private static final UUID D = new UUID(0, 4);
+
+    @Test
+    void ranksByTotalWithSharedRanksForTies() {
+        RankIndex index = new RankIndex(Map.of(A, 30.0, B, 20.0, C, 20.0));
+        assertEquals(1, index.getRank(A));
+        assertEquals(2, index.getRank(B));
+        assertEquals(2, index.getRank(C));
+        assertEquals(-1, index.getRank(D));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void appliesDeltasWithoutRebuilding() {
+        RankIndex index = new RankIndex(Map.of(A, 30.0, B, 20.0, C, 10.0));
+        index.applyDelta(C, 25.0);
+        assertEquals(1, index.getRank(C));
+        assertEquals(2, index.getRank(A));
+        assertEquals(3, index.getRank(B));
+
+        // 基础数据中没有的玩家
+        index.applyDelta(D, 25.0);
+        assertEquals(3, index.getRank(D));
+        assertEquals(4, index.getRank(B));
+        assertEquals(2, index.overrideCount());
+    }
+
+    @Test
+    void compactKeepsRanks() {
+        RankIndex index = new RankIndex(Map.of(A, 30.0, B, 20.0));
+        index.applyDelta(B, 15.0);
+        index.applyDelta(C, 5.0);
+        RankIndex compacted = index.compact();
+        assertEquals(0, compacted.overrideCount());
+        assertEquals(3, compacted.size());
+        for (UUID player : new UUID[]{A, B, C}) {
+            assertEquals(index.getRank(player), compacted.getRank(player));
+        }
+    }
+
+    @Test
+    void matchesBruteForceRanks() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 50; trial++) {
+            Map<UUID, Double> totals = new HashMap<>();
+            for (int i = 0; i < 50; i++) {
+                totals.put(new UUID(trial, i), (double) random.nextInt(20));
+            }
+            RankIndex index = new RankIndex(totals);
+            for (int i = 0; i < 100; i++) {
+                UUID player = new UUID(trial, random.nextInt(60));
+                double delta = random.nextInt(11) - 5;
+                index.applyDelta(player, delta);
+                totals.merge(player, delta, Double::sum);
+            }
+            for (UUID player : totals.keySet()) {
+                double value = totals.get(player);
+                long greater = totals.values().stream().filter(other -> other > value).count();
+                assertEquals(greater + 1, index.getRank(player));
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CycleResultsTest {
+
+    private static final UUID A = new UUID(0, 1);
+    private static final UUID B = new UUID(0, 2);
+
+    private final List<List<StatUpdate>> delivered = new ArrayList<>();
+
+    @Test
+    void deliversOnceAllPlayersFinish() {
+        CycleResults results = new CycleResults();
+        assertTrue(results.begin());
+        results.begin();
+        assertNull(results.finish(results.generation(), List.of(update(A, 1))));
+        CycleResults.Batch batch = results.finish(results.generation(), List.of(update(B, 2)));
+        assertNotNull(batch);
+        results.deliver(batch, delivered::add);
+        assertEquals(1, delivered.size());
+        assertEquals(2, delivered.get(0).size());
+    }
+
+    @Test
+    void quitBeforeCycleEndsDropsResolvedValues() {
+        CycleResults results = new CycleResults();
+        results.begin();
+        results.begin();
+        results.finish(results.generation(), List.of(update(A, 1)));
+        // A 退出并单独写入了更新的值
+        results.discardPlayer(A);
+        CycleResults.Batch batch = results.finish(results.generation(), List.of(update(B, 2)));
+        results.deliver(batch, delivered::add);
+        assertEquals(List.of(update(B, 2)), delivered.get(0));
+    }
+
+    @Test
+    void quitWhileBatchIsInFlightDropsItsValues() {
+        CycleResults results = new CycleResults();
+        results.begin();
+        CycleResults.Batch batch = results.finish(results.generation(), List.of(update(A, 1), update(B, 2)));
+        // 批次已经取出, 在交给写入方之前 A 退出
+        results.discardPlayer(A);
+        results.deliver(batch, delivered::add);
+        assertEquals(List.of(update(B, 2)), delivered.get(0));
+
+        // 交付完成后退出记录被清除, A 重新加入后的结果正常写入
+        results.begin();
+        results.deliver(results.finish(results.generation(), List.of(update(A, 3))), delivered::add);
+        assertEquals(List.of(update(A, 3)), delivered.get(1));
+    }
+
+    @Test
+    void quitBeforeBatchIsTakenDoesNotAffectLaterBatches() {
+        CycleResults results = new CycleResults();
+        results.begin();
+        CycleResults.Batch first = results.finish(results.generation(), List.of(update(B, 1)));
+        results.discardPlayer(A);
+        // A 退出之后才开始的周期
+        results.begin();
+        CycleResults.Batch second = results.finish(results.generation(), List.of(update(A, 2)));
+        results.deliver(first, delivered::add);
+        results.deliver(second, delivered::add);
+        assertEquals(List.of(update(A, 2)), delivered.get(1));
+    }
+
+    @Test
+    void lateCallbacksAfterResetAreIgnored() {
+        CycleResults results = new CycleResults();
+        long stopped = results.generation();
+        results.begin();
+        results.begin();
+        results.finish(stopped, List.of(update(A, 1)));
+        // 调度器停止: 已经解析的结果交给调用方, 未完成的计数清零
+        assertEquals(List.of(update(A, 1)), results.reset());
+
+        // 停止之前调度的任务迟到的回调不会交出批次
+        assertNull(results.finish(stopped, List.of(update(B, 2))));
+        assertTrue(results.reset().isEmpty());
+
+        // 新的一代从零开始计数
+        assertTrue(results.begin());
+        CycleResults.Batch batch = results.finish(results.generation(), List.of(update(B, 3)));
+        assertNotNull(batch);
+        assertEquals(List.of(update(B, 3)), batch.updates());
+    }
+
+    private static StatUpdate update(UUID playerUUID, long value) {
+        return new StatUpdate(playerUUID, "Player", "kills", BigDecimal.valueOf(value));
+    }
+}
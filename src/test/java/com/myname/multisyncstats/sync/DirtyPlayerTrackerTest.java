@@ -0,0 +1,70 @@
+package com.myname.multisyncstats.sync;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirtyPlayerTrackerTest {
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    @Test
+    void newPlayersAreActive() {
+        DirtyPlayerTracker tracker = new DirtyPlayerTracker(3);
+        assertEquals(DirtyPlayerTracker.Claim.ACTIVE, tracker.claim(PLAYER, 0));
+        assertEquals(DirtyPlayerTracker.Claim.SKIP, tracker.claim(PLAYER, 1));
+    }
+
+    @Test
+    void activityIsClaimedOnce() {
+        DirtyPlayerTracker tracker = new DirtyPlayerTracker(0);
+        tracker.claim(PLAYER, 0);
+        tracker.markDirty(PLAYER);
+        assertTrue(tracker.isDirty(PLAYER));
+        assertEquals(1, tracker.dirtyCount());
+
+        assertEquals(DirtyPlayerTracker.Claim.ACTIVE, tracker.claim(PLAYER, 1));
+        assertFalse(tracker.isDirty(PLAYER));
+        assertEquals(DirtyPlayerTracker.Claim.SKIP, tracker.claim(PLAYER, 2));
+    }
+
+    @Test
+    void idlePlayersAreSyncedEveryMaxIdleCycles() {
+        DirtyPlayerTracker tracker = new DirtyPlayerTracker(3);
+        tracker.claim(PLAYER, 0);
+        assertEquals(DirtyPlayerTracker.Claim.SKIP, tracker.claim(PLAYER, 1));
+        assertEquals(DirtyPlayerTracker.Claim.SKIP, tracker.claim(PLAYER, 2));
+        assertEquals(DirtyPlayerTracker.Claim.IDLE, tracker.claim(PLAYER, 3));
+        assertEquals(DirtyPlayerTracker.Claim.SKIP, tracker.claim(PLAYER, 4));
+        // 活动会重新开始计算空闲时间
+        tracker.markDirty(PLAYER);
+        assertEquals(DirtyPlayerTracker.Claim.ACTIVE, tracker.claim(PLAYER, 5));
+        assertEquals(DirtyPlayerTracker.Claim.SKIP, tracker.claim(PLAYER, 7));
+        assertEquals(DirtyPlayerTracker.Claim.IDLE, tracker.claim(PLAYER, 8));
+    }
+
+    @Test
+    void zeroMaxIdleCyclesNeverSyncsIdlePlayers() {
+        DirtyPlayerTracker tracker = new DirtyPlayerTracker(0);
+        tracker.claim(PLAYER, 0);
+        for (long cycle = 1; cycle < 100; cycle++) {
+            assertEquals(DirtyPlayerTracker.Claim.SKIP, tracker.claim(PLAYER, cycle));
+        }
+        assertEquals(1, tracker.getSyncedCount());
+        assertEquals(99, tracker.getSkippedCount());
+    }
+
+    @Test
+    void forgottenPlayersStartOver() {
+        DirtyPlayerTracker tracker = new DirtyPlayerTracker(0);
+        tracker.claim(PLAYER, 0);
+        tracker.markDirty(PLAYER);
+        tracker.forget(PLAYER);
+        assertFalse(tracker.isDirty(PLAYER));
+        assertEquals(DirtyPlayerTracker.Claim.ACTIVE, tracker.claim(PLAYER, 1));
+    }
+}
@@ -0,0 +1,93 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatDescriptor;
+import com.myname.multisyncstats.StatType;
+import com.myname.multisyncstats.StatUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyncCadenceTest {
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final StatDescriptor KILLS = new StatDescriptor(1, "kills", StatType.INTEGER);
+
+    @Test
+    void newPlaceholdersAreDueImmediately() {
+        SyncCadence cadence = new SyncCadence(1, 16, 4);
+        assertEquals(List.of(KILLS), cadence.selectForCycle(List.of(KILLS), 0));
+        // 初始间隔为 4 个周期
+        assertTrue(cadence.selectForCycle(List.of(KILLS), 3).isEmpty());
+        assertEquals(List.of(KILLS), cadence.selectForCycle(List.of(KILLS), 4));
+    }
+
+    @Test
+    void unchangedValuesDoubleTheIntervalUpToTheMaximum() {
+        SyncCadence cadence = new SyncCadence(1, 16, 4);
+        long cycle = 0;
+        for (int expected : new int[]{8, 16, 16}) {
+            cycle = nextDueCycle(cadence, cycle);
+            cadence.observe(List.of(update(7)), (uuid, name) -> BigDecimal.valueOf(7));
+            assertEquals(expected, cadence.getIntervalCycles("kills"));
+            cycle++;
+        }
+    }
+
+    @Test
+    void changedValuesHalveTheIntervalDownToTheMinimum() {
+        SyncCadence cadence = new SyncCadence(2, 16, 16);
+        long cycle = 0;
+        for (int expected : new int[]{8, 4, 2, 2}) {
+            cycle = nextDueCycle(cadence, cycle);
+            cadence.observe(List.of(update(cycle)), (uuid, name) -> BigDecimal.valueOf(-1));
+            assertEquals(expected, cadence.getIntervalCycles("kills"));
+            cycle++;
+        }
+    }
+
+    @Test
+    void noComparableValueKeepsTheInterval() {
+        SyncCadence cadence = new SyncCadence(1, 16, 4);
+        cadence.selectForCycle(List.of(KILLS), 0);
+        cadence.observe(List.of(update(1)), (uuid, name) -> null);
+        assertEquals(4, cadence.getIntervalCycles("kills"));
+    }
+
+    @Test
+    void adjustsOncePerDueCycle() {
+        SyncCadence cadence = new SyncCadence(1, 16, 2);
+        cadence.selectForCycle(List.of(KILLS), 0);
+        // 同一次到期中的额外结果 (例如事件驱动同步解析的活跃玩家) 不会再次加倍
+        cadence.observe(List.of(update(7)), (uuid, name) -> BigDecimal.valueOf(7));
+        cadence.observe(List.of(update(7)), (uuid, name) -> BigDecimal.valueOf(7));
+        assertEquals(4, cadence.getIntervalCycles("kills"));
+    }
+
+    @Test
+    void summarizesTheIntervalDistribution() {
+        SyncCadence cadence = new SyncCadence(1, 4, 1);
+        StatDescriptor deaths = new StatDescriptor(2, "deaths", StatType.INTEGER);
+        cadence.selectForCycle(List.of(KILLS, deaths), 0);
+        SyncCadence.Summary summary = cadence.summarize(List.of(KILLS, deaths));
+        assertEquals(2, summary.atMin());
+        assertEquals(0, summary.atMax());
+        assertEquals(2, summary.total());
+    }
+
+    private static long nextDueCycle(SyncCadence cadence, long from) {
+        long cycle = from;
+        while (cadence.selectForCycle(List.of(KILLS), cycle).isEmpty()) {
+            cycle++;
+        }
+        return cycle;
+    }
+
+    private static StatUpdate update(long value) {
+        return new StatUpdate(PLAYER, "Player", "kills", BigDecimal.valueOf(value));
+    }
+}
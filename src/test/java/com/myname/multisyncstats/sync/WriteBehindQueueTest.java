@@ -0,0 +1,105 @@
+package com.myname.multisyncstats.sync;
+
+import com.myname.multisyncstats.StatUpdate;
+import com.myname.multisyncstats.TestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindQueueTest {
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private final List<List<StatUpdate>> batches = Collections.synchronizedList(new ArrayList<>());
+    // 为 false 时写入失败, 数据留在队列中
+    private final AtomicBoolean accept = new AtomicBoolean(true);
+    private WriteBehindQueue queue;
+
+    @AfterEach
+    void shutdown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    private WriteBehindQueue create(int capacity, int workers, int batchSize) {
+        queue = new WriteBehindQueue(TestSupport.quietLogger(), batch -> {
+            if (!accept.get()) {
+                return false;
+            }
+            batches.add(List.copyOf(batch));
+            return true;
+        }, capacity, workers, false, batchSize, 100);
+        return queue;
+    }
+
+    @Test
+    void drainsEverythingInBoundedBatches() throws Exception {
+        WriteBehindQueue queue = create(1000, 4, 10);
+        List<StatUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            updates.add(update(new UUID(0, i), "kills", i));
+        }
+        queue.submit(updates);
+
+        assertTrue(queue.awaitDrained(5000));
+        assertEquals(100, queue.getWrittenCount());
+        assertEquals(0, queue.pendingCount());
+        assertEquals(100, batches.stream().mapToInt(List::size).sum());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 10));
+    }
+
+    @Test
+    void newerValuesReplacePendingOnes() throws Exception {
+        accept.set(false);
+        WriteBehindQueue queue = create(1000, 1, 10);
+        queue.submit(List.of(update(PLAYER, "kills", 1)));
+        assertTrue(TestSupport.await(() -> queue.getFailedBatchCount() > 0, 5000));
+
+        queue.submit(List.of(update(PLAYER, "kills", 2), update(PLAYER, "deaths", 5)));
+        accept.set(true);
+        assertTrue(queue.awaitDrained(5000));
+
+        // 同一个键只写入最新的值
+        List<StatUpdate> written = batches.stream().flatMap(List::stream).toList();
+        assertEquals(2, written.size());
+        assertEquals(0, BigDecimal.valueOf(2).compareTo(valueOf(written, "kills")));
+        assertEquals(0, BigDecimal.valueOf(5).compareTo(valueOf(written, "deaths")));
+        assertTrue(queue.getMergedCount() >= 1);
+    }
+
+    @Test
+    void failedWritesStayQueuedUntilShutdown() throws Exception {
+        accept.set(false);
+        WriteBehindQueue queue = create(1000, 2, 10);
+        queue.submit(List.of(update(PLAYER, "kills", 1), update(PLAYER, "deaths", 2), update(PLAYER, "time", 3)));
+        assertTrue(TestSupport.await(() -> queue.getFailedBatchCount() > 0, 5000));
+        assertTrue(TestSupport.await(() -> queue.pendingCount() == 3, 5000));
+
+        // 剩余的数据交给新的队列继续写入
+        List<StatUpdate> remaining = queue.shutdown();
+        assertEquals(3, remaining.size());
+        assertEquals(0, queue.getWrittenCount());
+    }
+
+    private static StatUpdate update(UUID playerUUID, String placeholderName, long value) {
+        return new StatUpdate(playerUUID, "Player", placeholderName, BigDecimal.valueOf(value));
+    }
+
+    private static BigDecimal valueOf(List<StatUpdate> updates, String placeholderName) {
+        return updates.stream()
+                .filter(update -> update.placeholderName().equals(placeholderName))
+                .findFirst()
+                .orElseThrow()
+                .value();
+    }
+}